@@ -15,6 +15,7 @@ import com.google.common.collect.Multimaps;
 import lombok.SneakyThrows;
 import lombok.val;
 
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.regex.Pattern;
@@ -25,19 +26,40 @@ import static java.nio.file.Files.lines;
 
 public abstract class AbstractSbtAlgorithm {
 
-    protected final Multimap<Integer, Pair<Configuration, List<Cycle>>> _3_2_sortings = Multimaps.synchronizedMultimap(HashMultimap.create());
-    protected final Multimap<Integer, Pair<Configuration, List<Cycle>>> _11_8_sortings = Multimaps.synchronizedMultimap(HashMultimap.create());
+    /**
+     * File names of the binary case tables written by {@link CaseTableConverter}.
+     */
+    public static final String CASES_3_2_TABLE = "cases-3_2.bin";
+    public static final String CASES_11_8_TABLE = "cases-11_8.bin";
+
+    protected CaseTable _3_2_sortings;
+    protected CaseTable _11_8_sortings;
+
+    /**
+     * Directory of the binary case tables, or null to load the cases from the text resources.
+     */
+    private final Path caseTablesDir;
 
     private final Pattern INPUT_PATTERN = Pattern.compile("^\\d+(,\\d+)*$");
 
     protected final Supplier<Boolean> INITIALIZER = Suppliers.memoize(() -> {
         System.out.print("Loading cases into memory...");
-        loadSortings("cases/cases-3,2.txt", _3_2_sortings);
-        load11_8Sortings(_11_8_sortings);
+        loadCases();
         System.out.println("finished loading.");
         return Boolean.TRUE;
     });
 
+    protected AbstractSbtAlgorithm() {
+        this(null);
+    }
+
+    /**
+     * @param caseTablesDir directory of the binary case tables, or null to load the cases from the text resources
+     */
+    protected AbstractSbtAlgorithm(final Path caseTablesDir) {
+        this.caseTablesDir = caseTablesDir;
+    }
+
     public Pair<Cycle, List<Cycle>> sort(final String input) {
         if (!INPUT_PATTERN.matcher(input).matches()) {
             throw new RuntimeException("Malformed input");
@@ -58,6 +80,20 @@ public abstract class AbstractSbtAlgorithm {
 
     protected abstract Pair<Cycle, List<Cycle>> doSort(final Cycle pi);
 
+    private void loadCases() {
+        if (caseTablesDir != null) {
+            _3_2_sortings = MappedCaseTable.open(caseTablesDir.resolve(CASES_3_2_TABLE));
+            _11_8_sortings = MappedCaseTable.open(caseTablesDir.resolve(CASES_11_8_TABLE));
+        } else {
+            final Multimap<Integer, Pair<Configuration, List<Cycle>>> _3_2 = Multimaps.synchronizedMultimap(HashMultimap.create());
+            final Multimap<Integer, Pair<Configuration, List<Cycle>>> _11_8 = Multimaps.synchronizedMultimap(HashMultimap.create());
+            loadSortings("cases/cases-3,2.txt", _3_2);
+            load11_8Sortings(_11_8);
+            _3_2_sortings = PerfectHashCaseTable.of(_3_2.values());
+            _11_8_sortings = PerfectHashCaseTable.of(_11_8.values());
+        }
+    }
+
     protected abstract void load11_8Sortings(Multimap<Integer, Pair<Configuration, List<Cycle>>> sortings);
 
     public static int get3Norm(final Collection<Cycle> mu) {
@@ -224,15 +260,11 @@ public abstract class AbstractSbtAlgorithm {
         return searchForSeq(mu, pi, _11_8_sortings);
     }
 
-    protected Optional<List<Cycle>> searchForSeq(final Collection<Cycle> mu, final Cycle pi,
-                                                 final Multimap<Integer, Pair<Configuration, List<Cycle>>> sortings) {
+    protected Optional<List<Cycle>> searchForSeq(final Collection<Cycle> mu, final Cycle pi, final CaseTable sortings) {
         val muPrime = new MulticyclePermutation(mu);
         val config = new Configuration(muPrime, removeExtraSymbols(muPrime.getSymbols(), pi));
 
-        val pair = sortings.get(config.hashCode()).stream()
-                .filter(p -> p.getFirst().equals(config)).findFirst();
-
-        return pair.map(configurationListPair -> config.translatedSorting(configurationListPair.getFirst(), configurationListPair.getSecond()));
+        return sortings.lookup(config);
     }
 
     protected Optional<List<Cycle>> searchForSeqBadSmallComponents(final List<Cycle> badSmallComponents,
@@ -242,11 +274,9 @@ public abstract class AbstractSbtAlgorithm {
             val spi = new MulticyclePermutation(badSmallComponents);
             val subConfig = new Configuration(spi, removeExtraSymbols(spi.getSymbols(), pi));
 
-            var pair = _11_8_sortings.get(subConfig.hashCode())
-                    .stream().filter(p -> p.getFirst().equals(subConfig)).findFirst();
-            if (pair.isPresent()) {
-                val sorting = subConfig.translatedSorting(pair.get().getFirst(), pair.get().getSecond());
-                return Optional.of(sorting);
+            val sorting = _11_8_sortings.lookup(subConfig);
+            if (sorting.isPresent()) {
+                return sorting;
             }
 
             badSmallComponents.remove(0);
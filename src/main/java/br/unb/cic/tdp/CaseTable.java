@@ -0,0 +1,19 @@
+package br.unb.cic.tdp;
+
+import br.unb.cic.tdp.base.Configuration;
+import br.unb.cic.tdp.permutation.Cycle;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Read-only table of the configurations sorted by the case analysis.
+ */
+public interface CaseTable {
+
+    /**
+     * @return the sorting of a stored configuration equivalent to <code>configuration</code>, translated to the symbols
+     * of <code>configuration</code>
+     */
+    Optional<List<Cycle>> lookup(Configuration configuration);
+}
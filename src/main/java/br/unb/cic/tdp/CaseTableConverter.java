@@ -0,0 +1,49 @@
+package br.unb.cic.tdp;
+
+import br.unb.cic.tdp.base.Configuration;
+import br.unb.cic.tdp.permutation.Cycle;
+import br.unb.cic.tdp.util.Pair;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import lombok.SneakyThrows;
+import lombok.val;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Converts the text cases used by an algorithm into the binary case tables read by {@link MappedCaseTable}, so that
+ * the algorithm can be started without parsing them.
+ */
+public class CaseTableConverter {
+
+    // mvn exec:java -Dexec.mainClass="br.unb.cic.tdp.CaseTableConverter" -Dexec.args="silvaetal /tmp/case-tables"
+    @SneakyThrows
+    public static void main(final String[] args) {
+        final AbstractSbtAlgorithm algorithm;
+        switch (args[0]) {
+            case "silvaetal":
+                algorithm = new Silvaetal();
+                break;
+            case "eh":
+                algorithm = new EliasAndHartman();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown algorithm " + args[0] + ", expected silvaetal or eh");
+        }
+
+        val outputDir = Paths.get(args[1]);
+        Files.createDirectories(outputDir);
+
+        final Multimap<Integer, Pair<Configuration, List<Cycle>>> _3_2 = HashMultimap.create();
+        algorithm.loadSortings("cases/cases-3,2.txt", _3_2);
+        MappedCaseTable.write(_3_2.values(), outputDir.resolve(AbstractSbtAlgorithm.CASES_3_2_TABLE));
+
+        final Multimap<Integer, Pair<Configuration, List<Cycle>>> _11_8 = HashMultimap.create();
+        algorithm.load11_8Sortings(_11_8);
+        MappedCaseTable.write(_11_8.values(), outputDir.resolve(AbstractSbtAlgorithm.CASES_11_8_TABLE));
+
+        System.out.println("Wrote " + _3_2.size() + " 3,2 and " + _11_8.size() + " 11/8 cases to " + outputDir);
+    }
+}
@@ -10,6 +10,7 @@ import lombok.SneakyThrows;
 import lombok.val;
 
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -19,6 +20,16 @@ import static br.unb.cic.tdp.permutation.PermutationGroups.computeProduct;
 
 public class EliasAndHartman extends AbstractSbtAlgorithm {
 
+    public EliasAndHartman() {
+    }
+
+    /**
+     * @param caseTablesDir directory of the binary case tables written by {@link CaseTableConverter}
+     */
+    public EliasAndHartman(final Path caseTablesDir) {
+        super(caseTablesDir);
+    }
+
     public Pair<Cycle, List<Cycle>> doSort(Cycle pi) {
         val sorting = new ArrayList<Cycle>();
 
@@ -141,7 +152,8 @@ public class EliasAndHartman extends AbstractSbtAlgorithm {
     }
 
     public static void main(String[] args) {
-        val eliasAndHartman = new EliasAndHartman();
+        // the optional second argument is a directory of binary case tables
+        val eliasAndHartman = args.length > 1 ? new EliasAndHartman(Paths.get(args[1])) : new EliasAndHartman();
         val permutation = "0," + args[0];
         val moves = eliasAndHartman.sort(permutation);
         var pi = moves.getFirst();
@@ -0,0 +1,160 @@
+package br.unb.cic.tdp;
+
+import br.unb.cic.tdp.base.Configuration;
+import br.unb.cic.tdp.permutation.Cycle;
+import br.unb.cic.tdp.util.Pair;
+import lombok.SneakyThrows;
+import lombok.val;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Case table read from a memory-mapped binary file written by {@link #write(Collection, Path)}. Opening a table only
+ * maps the file, and lookups read the mapped bytes, so loading takes no time and almost no heap.
+ * <p>
+ * The file holds a header (magic, version, number of cases and number of slots), an open-addressing hash index of
+ * <code>int</code> record offsets (0 marks an empty slot) and the records. Each case is stored once, under the CRC32
+ * hash of its canonical signature ({@link Configuration#hashCode()}), as:
+ * <ul>
+ * <li>the number of symbols n, followed by the n values of the canonical signature;</li>
+ * <li>the number of moves m, followed by m symbol triples of the sorting of the canonical configuration.</li>
+ * </ul>
+ */
+public final class MappedCaseTable implements CaseTable {
+
+    private static final int MAGIC = 0x54445043;
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 16;
+
+    private final ByteBuffer buffer;
+    private final int slotMask;
+
+    private MappedCaseTable(final ByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Not a case table");
+        }
+        this.buffer = buffer;
+        this.slotMask = buffer.getInt(12) - 1;
+    }
+
+    @SneakyThrows
+    public static MappedCaseTable open(final Path file) {
+        try (val channel = FileChannel.open(file, READ)) {
+            // the mapping remains valid after the channel is closed
+            return new MappedCaseTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int size() {
+        return buffer.getInt(8);
+    }
+
+    @Override
+    public Optional<List<Cycle>> lookup(final Configuration configuration) {
+        val canonical = configuration.getCanonical();
+        val signature = canonical.getSignature().getContent();
+
+        for (int slot = configuration.hashCode() & slotMask; ; slot = (slot + 1) & slotMask) {
+            val offset = buffer.getInt(HEADER_BYTES + slot * 4);
+            if (offset == 0) {
+                return Optional.empty();
+            }
+            if (matches(offset, signature)) {
+                return Optional.of(configuration.translatedSorting(canonical, readSorting(offset + 1 + signature.length * 2)));
+            }
+        }
+    }
+
+    private boolean matches(final int offset, final short[] signature) {
+        if ((buffer.get(offset) & 0xFF) != signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (buffer.getShort(offset + 1 + i * 2) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<Cycle> readSorting(final int offset) {
+        val moves = buffer.get(offset) & 0xFF;
+        val sorting = new ArrayList<Cycle>(moves);
+        for (int m = 0; m < moves; m++) {
+            val move = offset + 1 + m * 3;
+            sorting.add(Cycle.of(buffer.get(move) & 0xFF, buffer.get(move + 1) & 0xFF, buffer.get(move + 2) & 0xFF));
+        }
+        return sorting;
+    }
+
+    /**
+     * Writes the cases to <code>file</code>. Equivalent configurations are stored once.
+     */
+    public static void write(final Collection<Pair<Configuration, List<Cycle>>> sortings, final Path file) throws IOException {
+        // canonical signature -> sorting of the canonical configuration
+        val cases = new LinkedHashMap<Configuration.Signature, List<Cycle>>();
+        for (val pair : sortings) {
+            val canonical = pair.getFirst().getCanonical();
+            if (!cases.containsKey(canonical.getSignature())) {
+                cases.put(canonical.getSignature(), canonical.translatedSorting(pair.getFirst(), pair.getSecond()));
+            }
+        }
+
+        for (val signature : cases.keySet()) {
+            if (signature.getContent().length > 0xFF) {
+                throw new IllegalArgumentException("Case tables are limited to configurations of 255 symbols");
+            }
+        }
+
+        val slots = Integer.highestOneBit(Math.max(cases.size(), 1) * 4 - 1);
+        val index = new int[slots];
+        var offset = HEADER_BYTES + slots * 4L;
+        for (val entry : cases.entrySet()) {
+            if (offset > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Case tables are limited to 2 GB");
+            }
+            var slot = entry.getKey().hashCode() & (slots - 1);
+            while (index[slot] != 0) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            index[slot] = (int) offset;
+            offset += 2 + entry.getKey().getContent().length * 2 + entry.getValue().size() * 3;
+        }
+
+        try (val out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 20))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(cases.size());
+            out.writeInt(slots);
+            for (val slotOffset : index) {
+                out.writeInt(slotOffset);
+            }
+            for (val entry : cases.entrySet()) {
+                val signature = entry.getKey().getContent();
+                out.writeByte(signature.length);
+                for (val value : signature) {
+                    out.writeShort(value);
+                }
+                out.writeByte(entry.getValue().size());
+                for (val move : entry.getValue()) {
+                    out.writeByte(move.get(0));
+                    out.writeByte(move.get(1));
+                    out.writeByte(move.get(2));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package br.unb.cic.tdp;
+
+import br.unb.cic.tdp.base.Configuration;
+import br.unb.cic.tdp.permutation.Cycle;
+import br.unb.cic.tdp.util.Pair;
+import lombok.val;
+
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+
+import static br.unb.cic.tdp.base.CommonOperations.CANONICAL_PI;
+
+/**
+ * Immutable case table indexed by a minimal perfect hash (hash and displace) over the equivalent signatures of the
+ * cases. Each case is stored once, under its canonical form, and indexed under all its rotation and mirror
+ * signatures, together with the rotation and mirror that translate its sorting. A lookup therefore only hashes the
+ * signature the configuration already has, probes one slot and compares the signature stored there; no
+ * canonical form or equivalent signature is computed, and no locks are taken.
+ * <p>
+ * The signatures are split into buckets of about {@value #BUCKET_SIZE}. Each bucket gets the first seed that sends
+ * all its signatures to free slots, the largest buckets first, and a signature lives in the slot given by the seed of
+ * its bucket.
+ */
+public final class PerfectHashCaseTable implements CaseTable {
+
+    private static final int BUCKET_SIZE = 4;
+
+    private static final int MAX_SEED = 1 << 24;
+
+    private final int[] seeds;
+
+    /**
+     * Signatures in slot order; those of the slot s are in [signatureOffsets[s], signatureOffsets[s + 1]).
+     */
+    private final short[] signatures;
+    private final int[] signatureOffsets;
+
+    /**
+     * Case of each slot, and the rotation and mirror flag, as <code>rotation << 1 | mirror</code>, of the equivalent
+     * signature of the looked up configuration that is the canonical signature of the case.
+     */
+    private final int[] cases;
+    private final short[] orientations;
+
+    /**
+     * Symbol triples of the sortings of the canonical configurations, by case; those of the case c are in
+     * [moveOffsets[c], moveOffsets[c + 1]).
+     */
+    private final byte[] moves;
+    private final int[] moveOffsets;
+
+    private PerfectHashCaseTable(final int[] seeds, final short[] signatures, final int[] signatureOffsets,
+                                 final int[] cases, final short[] orientations,
+                                 final byte[] moves, final int[] moveOffsets) {
+        this.seeds = seeds;
+        this.signatures = signatures;
+        this.signatureOffsets = signatureOffsets;
+        this.cases = cases;
+        this.orientations = orientations;
+        this.moves = moves;
+        this.moveOffsets = moveOffsets;
+    }
+
+    public static PerfectHashCaseTable of(final Collection<Pair<Configuration, List<Cycle>>> sortings) {
+        // canonical signature -> sorting of the canonical configuration
+        val canonicalSortings = new LinkedHashMap<Configuration.Signature, List<Cycle>>();
+        for (val pair : sortings) {
+            val canonical = pair.getFirst().getCanonical();
+            if (!canonicalSortings.containsKey(canonical.getSignature())) {
+                canonicalSortings.put(canonical.getSignature(), canonical.translatedSorting(pair.getFirst(), pair.getSecond()));
+            }
+        }
+
+        val moveOffsets = new int[canonicalSortings.size() + 1];
+        var c = 0;
+        for (val sorting : canonicalSortings.values()) {
+            moveOffsets[c + 1] = moveOffsets[c] + sorting.size() * 3;
+            c++;
+        }
+        val moves = new byte[moveOffsets[canonicalSortings.size()]];
+        var m = 0;
+        for (val sorting : canonicalSortings.values()) {
+            for (val move : sorting) {
+                moves[m++] = (byte) move.get(0);
+                moves[m++] = (byte) move.get(1);
+                moves[m++] = (byte) move.get(2);
+            }
+        }
+
+        // equivalent signature -> case << 16 | orientation
+        val entries = new LinkedHashMap<ShortBuffer, Integer>();
+        c = 0;
+        for (val signature : canonicalSortings.keySet()) {
+            val n = signature.getContent().length;
+            val equivalentSignatures = Configuration.ofSignature(signature.getContent()).getEquivalentSignatures().iterator();
+            for (int e = 0; equivalentSignatures.hasNext(); e++) {
+                val key = ShortBuffer.wrap(equivalentSignatures.next().getContent());
+                val rotation = e / 2;
+                val mirror = e % 2 == 1;
+                // the signature of the case rotated by i is the one of the configuration rotated by n - i, and
+                // the mirrored signature of the case rotated by i is the mirrored one of the configuration rotated by i
+                val orientation = (mirror ? rotation : (n - rotation) % n) << 1 | (mirror ? 1 : 0);
+                entries.putIfAbsent(key, c << 16 | orientation);
+            }
+            c++;
+        }
+
+        val keys = new short[entries.size()][];
+        val payloads = new int[entries.size()];
+        var k = 0;
+        for (val entry : entries.entrySet()) {
+            keys[k] = entry.getKey().array();
+            payloads[k++] = entry.getValue();
+        }
+
+        val seeds = new int[Math.max(keys.length / BUCKET_SIZE, 1)];
+        val slots = place(keys, seeds);
+
+        val keyBySlot = new int[keys.length];
+        for (k = 0; k < keys.length; k++) {
+            keyBySlot[slots[k]] = k;
+        }
+
+        val signatureOffsets = new int[keys.length + 1];
+        for (int s = 0; s < keys.length; s++) {
+            signatureOffsets[s + 1] = signatureOffsets[s] + keys[keyBySlot[s]].length;
+        }
+
+        val signatures = new short[signatureOffsets[keys.length]];
+        val cases = new int[keys.length];
+        val orientations = new short[keys.length];
+        for (int s = 0; s < keys.length; s++) {
+            val key = keys[keyBySlot[s]];
+            System.arraycopy(key, 0, signatures, signatureOffsets[s], key.length);
+            cases[s] = payloads[keyBySlot[s]] >>> 16;
+            orientations[s] = (short) payloads[keyBySlot[s]];
+        }
+
+        return new PerfectHashCaseTable(seeds, signatures, signatureOffsets, cases, orientations, moves, moveOffsets);
+    }
+
+    /**
+     * Finds the seed of each bucket.
+     *
+     * @return the slot of each key
+     */
+    private static int[] place(final short[][] keys, final int[] seeds) {
+        val hashes = new long[keys.length];
+        val bucketSizes = new int[seeds.length];
+        for (int k = 0; k < keys.length; k++) {
+            hashes[k] = hash(keys[k]);
+            bucketSizes[bucketOf(hashes[k], seeds.length)]++;
+        }
+
+        val bucketStarts = new int[seeds.length + 1];
+        for (int b = 0; b < seeds.length; b++) {
+            bucketStarts[b + 1] = bucketStarts[b] + bucketSizes[b];
+        }
+        val keysByBucket = new int[keys.length];
+        val filled = new int[seeds.length];
+        for (int k = 0; k < keys.length; k++) {
+            val bucket = bucketOf(hashes[k], seeds.length);
+            keysByBucket[bucketStarts[bucket] + filled[bucket]++] = k;
+        }
+
+        val buckets = new Integer[seeds.length];
+        for (int b = 0; b < seeds.length; b++) {
+            buckets[b] = b;
+        }
+        Arrays.sort(buckets, (b1, b2) -> Integer.compare(bucketSizes[b2], bucketSizes[b1]));
+
+        val slots = new int[keys.length];
+        val taken = new boolean[keys.length];
+        for (val bucket : buckets) {
+            if (bucketSizes[bucket] == 0) {
+                break;
+            }
+
+            var seed = 0;
+            while (!fits(hashes, keysByBucket, bucketStarts[bucket], bucketStarts[bucket + 1], seed, taken, slots)) {
+                if (++seed == MAX_SEED) {
+                    throw new IllegalStateException("Could not build a perfect hash, are there duplicated signatures?");
+                }
+            }
+
+            seeds[bucket] = seed;
+            for (int p = bucketStarts[bucket]; p < bucketStarts[bucket + 1]; p++) {
+                taken[slots[keysByBucket[p]]] = true;
+            }
+        }
+
+        return slots;
+    }
+
+    private static boolean fits(final long[] hashes, final int[] keysByBucket, final int from, final int to,
+                                final int seed, final boolean[] taken, final int[] slots) {
+        for (int p = from; p < to; p++) {
+            val slot = slotOf(hashes[keysByBucket[p]], seed, taken.length);
+            if (taken[slot]) {
+                return false;
+            }
+            for (int q = from; q < p; q++) {
+                if (slots[keysByBucket[q]] == slot) {
+                    return false;
+                }
+            }
+            slots[keysByBucket[p]] = slot;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of cases
+     */
+    public int size() {
+        return moveOffsets.length - 1;
+    }
+
+    @Override
+    public Optional<List<Cycle>> lookup(final Configuration configuration) {
+        if (cases.length == 0) {
+            return Optional.empty();
+        }
+
+        val key = configuration.getSignature().getContent();
+        val hash = hash(key);
+        val slot = slotOf(hash, seeds[bucketOf(hash, seeds.length)], cases.length);
+
+        if (!Arrays.equals(signatures, signatureOffsets[slot], signatureOffsets[slot + 1], key, 0, key.length)) {
+            return Optional.empty();
+        }
+
+        val c = cases[slot];
+        val sorting = new ArrayList<Cycle>((moveOffsets[c + 1] - moveOffsets[c]) / 3);
+        for (int m = moveOffsets[c]; m < moveOffsets[c + 1]; m += 3) {
+            sorting.add(Cycle.of(moves[m] & 0xFF, moves[m + 1] & 0xFF, moves[m + 2] & 0xFF));
+        }
+        return Optional.of(configuration.translatedSorting(CANONICAL_PI[key.length], sorting,
+                orientations[slot] >> 1, (orientations[slot] & 1) == 1));
+    }
+
+    private static long hash(final short[] key) {
+        // FNV-1a, one signature value at a time
+        var hash = 0xCBF29CE484222325L;
+        for (val value : key) {
+            hash = (hash ^ (value & 0xFFFF)) * 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static int bucketOf(final long hash, final int buckets) {
+        return (int) Long.remainderUnsigned(hash, buckets);
+    }
+
+    private static int slotOf(final long hash, final int seed, final int slots) {
+        return (int) Long.remainderUnsigned(mix(hash ^ (seed + 1) * 0x9E3779B97F4A7C15L), slots);
+    }
+
+    // the finalizer of SplitMix64
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -22,6 +22,16 @@ import static br.unb.cic.tdp.base.CommonOperations.*;
 
 public class Silvaetal extends AbstractSbtAlgorithm {
 
+    public Silvaetal() {
+    }
+
+    /**
+     * @param caseTablesDir directory of the binary case tables written by {@link CaseTableConverter}
+     */
+    public Silvaetal(final Path caseTablesDir) {
+        super(caseTablesDir);
+    }
+
     public Pair<Cycle, List<Cycle>> transform(Cycle pi, Cycle sigma) {
         INITIALIZER.get();
 
@@ -247,11 +257,9 @@ public class Silvaetal extends AbstractSbtAlgorithm {
                     }
 
                     val config = new Configuration(new MulticyclePermutation(_7Cycle), Cycle.of(piPrime));
-                    if (_11_8_sortings.containsKey(config.hashCode())) {
-                        val pair = _11_8_sortings.get(config.hashCode()).stream()
-                                .filter(p -> p.getFirst().equals(config)).findFirst().get();
-                        val moves = config.translatedSorting(pair.getFirst(), pair.getSecond());
-                        return new Pair<>(moves, applyMoves(pi, moves));
+                    val moves = _11_8_sortings.lookup(config);
+                    if (moves.isPresent()) {
+                        return new Pair<>(moves.get(), applyMoves(pi, moves.get()));
                     }
                 }
             }
@@ -281,7 +289,8 @@ public class Silvaetal extends AbstractSbtAlgorithm {
     }
 
     public static void main(final String[] args) {
-        val silvaetal = new Silvaetal();
+        // the optional second argument is a directory of binary case tables
+        val silvaetal = args.length > 1 ? new Silvaetal(Paths.get(args[1])) : new Silvaetal();
         val permutation = "0," + args[0];
         val moves = silvaetal.sort(permutation);
         var pi = Cycle.of(permutation);
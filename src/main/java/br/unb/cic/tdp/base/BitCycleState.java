@@ -0,0 +1,126 @@
+package br.unb.cic.tdp.base;
+
+import br.unb.cic.tdp.permutation.OneLinePermutation;
+import lombok.val;
+
+import java.util.Arrays;
+
+/**
+ * Cycle state for up to {@value #MAX_SYMBOLS} symbols. Each cycle is identified by its smallest symbol and its members
+ * are kept in a 64-bit mask, so the cycles touched by a move are found with a few bitwise operations and their parity
+ * with popcount. Undoing a move takes two longs: the values overwritten in <code>oneLine</code> and the mask of the
+ * touched symbols, whose cycles are rebuilt.
+ */
+final class BitCycleState extends CycleState {
+
+    static final int MAX_SYMBOLS = 64;
+
+    private final byte[] cycleOf;
+    private final byte[] position;
+    private final long[] members;
+
+    private long[] undoStack;
+    private int undoTop;
+
+    BitCycleState(final OneLinePermutation spi) {
+        super(spi);
+        if (oneLine.length > MAX_SYMBOLS) {
+            throw new IllegalArgumentException("At most " + MAX_SYMBOLS + " symbols are supported");
+        }
+        this.cycleOf = new byte[oneLine.length];
+        this.position = new byte[oneLine.length];
+        this.members = new long[oneLine.length];
+        this.undoStack = new long[64];
+        evenCycles = rebuild(oneLine.length == MAX_SYMBOLS ? -1L : (1L << oneLine.length) - 1);
+    }
+
+    @Override
+    int cycleOf(final int symbol) {
+        return cycleOf[symbol];
+    }
+
+    @Override
+    int cycleSize(final int cycle) {
+        return Long.bitCount(members[cycle]);
+    }
+
+    @Override
+    int position(final int symbol) {
+        return position[symbol];
+    }
+
+    @Override
+    void applyMove(final int a, final int b, final int c) {
+        val av = oneLine[a];
+        val bv = oneLine[b];
+        val cv = oneLine[c];
+
+        val ma = members[cycleOf[a]];
+        val mb = members[cycleOf[b]];
+        val mc = members[cycleOf[c]];
+        val touched = ma | mb | mc;
+
+        if (undoTop == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, undoStack.length * 2);
+        }
+        undoStack[undoTop++] = (av & 0xFFL) | ((bv & 0xFFL) << 8) | ((cv & 0xFFL) << 16) | ((long) evenCycles << 24);
+        undoStack[undoTop++] = touched;
+
+        var oldLocalEven = parity(ma);
+        if (mb != ma) oldLocalEven += parity(mb);
+        if (mc != ma && mc != mb) oldLocalEven += parity(mc);
+
+        oneLine[a] = cv;
+        oneLine[b] = av;
+        oneLine[c] = bv;
+        hash ^= moveHash(a, b, c, av, bv, cv);
+        evenCycles += rebuild(touched) - oldLocalEven;
+    }
+
+    @Override
+    void undoMove(final int a, final int b, final int c) {
+        val touched = undoStack[--undoTop];
+        val packed = undoStack[--undoTop];
+        val av = (byte) (packed & 0xFF);
+        val bv = (byte) ((packed >>> 8) & 0xFF);
+        val cv = (byte) ((packed >>> 16) & 0xFF);
+
+        oneLine[a] = av;
+        oneLine[b] = bv;
+        oneLine[c] = cv;
+        hash ^= moveHash(a, b, c, av, bv, cv);
+        rebuild(touched);
+        evenCycles = (int) (packed >>> 24);
+    }
+
+    /**
+     * Rebuilds the cycles covering the symbols in <code>symbols</code>.
+     *
+     * @return the number of even cycles among them
+     */
+    private int rebuild(final long symbols) {
+        var localEven = 0;
+        var remaining = symbols;
+        while (remaining != 0) {
+            val id = Long.numberOfTrailingZeros(remaining);
+            var mask = 0L;
+            var pos = 0;
+            var cur = id;
+            do {
+                mask |= 1L << cur;
+                cycleOf[cur] = (byte) id;
+                position[cur] = (byte) pos++;
+                cur = oneLine[cur] & 0xFF;
+            } while (cur != id);
+
+            members[id] = mask;
+            remaining &= ~mask;
+            localEven += parity(mask);
+        }
+        return localEven;
+    }
+
+    private static int parity(final long cycle) {
+        return even(Long.bitCount(cycle));
+    }
+}
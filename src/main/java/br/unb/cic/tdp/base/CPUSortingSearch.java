@@ -0,0 +1,121 @@
+package br.unb.cic.tdp.base;
+
+import br.unb.cic.tdp.permutation.OneLinePermutation;
+import lombok.SneakyThrows;
+import lombok.val;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+public class CPUSortingSearch implements SortingBackend {
+
+    /**
+     * Memory budget of the transposition table of each slot.
+     */
+    public static final long DEFAULT_TABLE_BYTES = 64L * 1024 * 1024;
+
+    private final ArrayBlockingQueue<TranspositionTable> slotPool;
+
+    /**
+     * Number of levels of each search split into fork/join tasks; 0 searches sequentially.
+     */
+    private final int splitDepth;
+    private final boolean deterministic;
+
+    public CPUSortingSearch() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public CPUSortingSearch(final int slots) {
+        this(slots, DEFAULT_TABLE_BYTES);
+    }
+
+    public CPUSortingSearch(final int slots, final long tableBytes) {
+        this(slots, tableBytes, 0, true);
+    }
+
+    /**
+     * @param splitDepth    number of levels of each search split into fork/join tasks (0 searches sequentially)
+     * @param deterministic whether parallel searches must return the same sequence as the sequential search
+     */
+    public CPUSortingSearch(final int slots, final long tableBytes, final int splitDepth, final boolean deterministic) {
+        this.splitDepth = splitDepth;
+        this.deterministic = deterministic;
+        this.slotPool = new ArrayBlockingQueue<>(slots);
+        for (int i = 0; i < slots; i++) {
+            slotPool.add(new TranspositionTable(tableBytes));
+        }
+    }
+
+    @Override
+    public List<int[]> search(
+            final byte[] pi,
+            final OneLinePermutation spi,
+            final int initialEvenCycles,
+            final float minRate,
+            final int maxMoves,
+            final boolean fullSorting
+    ) {
+        return searchDeepening(pi, spi, initialEvenCycles, minRate, new int[]{maxMoves}, fullSorting);
+    }
+
+    /**
+     * The failures recorded in the transposition table with a bound are kept for the next bounds, so that the states
+     * already known to fail are not explored again.
+     */
+    @SneakyThrows
+    @Override
+    public List<int[]> searchDeepening(
+            final byte[] pi,
+            final OneLinePermutation spi,
+            final int initialEvenCycles,
+            final float minRate,
+            final int[] bounds,
+            final boolean fullSorting,
+            final StageListener listener
+    ) {
+        val table = slotPool.take();
+
+        try {
+            // failures depend on the search parameters, so they cannot be reused across searches
+            table.clear();
+            for (val maxMoves : bounds) {
+                val start = System.nanoTime();
+                val sorting = search(pi, spi, initialEvenCycles, minRate, maxMoves, fullSorting, table);
+                listener.stageCompleted(maxMoves, !sorting.isEmpty(), System.nanoTime() - start);
+                if (!sorting.isEmpty()) {
+                    return sorting;
+                }
+            }
+            return Collections.emptyList();
+        } finally {
+            slotPool.add(table);
+        }
+    }
+
+    private List<int[]> search(
+            final byte[] pi,
+            final OneLinePermutation spi,
+            final int initialEvenCycles,
+            final float minRate,
+            final int maxMoves,
+            final boolean fullSorting,
+            final TranspositionTable table
+    ) {
+        if (splitDepth > 0) {
+            return SortingSearch.searchForSortingSeqInParallel(pi, spi, initialEvenCycles, minRate, maxMoves,
+                    fullSorting, splitDepth, deterministic, table);
+        }
+
+        if (pi.length <= NibbleSortingSearch.MAX_SYMBOLS) {
+            return NibbleSortingSearch.searchForSortingSeq(pi, spi, initialEvenCycles, minRate, maxMoves,
+                    fullSorting, table);
+        }
+
+        // the search transforms pi and spi in place
+        return SortingSearch.searchForSortingSeq(
+                pi.clone(), new OneLinePermutation(spi.getOneLine().clone()),
+                initialEvenCycles, minRate, maxMoves, fullSorting, table);
+    }
+}
@@ -0,0 +1,63 @@
+package br.unb.cic.tdp.base;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import lombok.val;
+
+import java.nio.ShortBuffer;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache, shared by all threads, of canonical signatures by signature. The proof generation builds the same
+ * configurations over and over (each extension, combination and navigation page creates fresh instances), and
+ * {@link Configuration#getCanonical()} only caches per instance. Once enabled, every canonicalization goes through
+ * this cache, whose least recently used entries are evicted beyond the maximum size. Only the signatures are kept,
+ * the canonical configurations are built from them on demand.
+ * <p>
+ * Disabled by default, in which case canonical forms are computed for each instance as before.
+ */
+public final class CanonicalCache {
+
+    private static volatile Cache<ShortBuffer, short[]> cache;
+
+    private CanonicalCache() {
+    }
+
+    public static void enable(final long maximumSize) {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                .recordStats()
+                .build();
+    }
+
+    public static void disable() {
+        cache = null;
+    }
+
+    /**
+     * @return the hits, misses and evictions since the cache was enabled, or empty stats if it is disabled
+     */
+    public static CacheStats stats() {
+        val current = cache;
+        return current == null ? new CacheStats(0, 0, 0, 0, 0, 0) : current.stats();
+    }
+
+    static short[] get(final short[] signature, final Supplier<short[]> canonicalSignature) {
+        val current = cache;
+        if (current == null) {
+            return canonicalSignature.get();
+        }
+
+        // signatures are never modified once built, so they can be wrapped as keys
+        val key = ShortBuffer.wrap(signature);
+        var result = current.getIfPresent(key);
+        if (result == null) {
+            // racing threads may compute the same canonical form, which is cheaper than blocking them
+            result = canonicalSignature.get();
+            current.put(key, result);
+        }
+        return result;
+    }
+}
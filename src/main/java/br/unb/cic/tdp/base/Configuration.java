@@ -2,28 +2,31 @@ package br.unb.cic.tdp.base;
 
 import br.unb.cic.tdp.permutation.Cycle;
 import br.unb.cic.tdp.permutation.MulticyclePermutation;
-import com.google.common.primitives.Floats;
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Shorts;
 import lombok.Getter;
-import lombok.SneakyThrows;
 import lombok.ToString;
 import lombok.val;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.util.stream.Stream;
-import java.util.zip.CRC32;
 
 import static br.unb.cic.tdp.base.CommonOperations.*;
 
 /**
- * Only supports oriented cycles whose length is at most 100.
+ * Only supports configurations with at most {@value #MAX_LABEL} cycles whose oriented cycles have at most
+ * {@value #MAX_RANK} symbols.
+ * <p>
+ * A signature holds, for each symbol of pi, the label of its cycle (cycles are labelled from 1 in the order in which
+ * they appear in pi) and, if the cycle is oriented, the rank of the symbol in it, packed by {@link #pack(int, int)}.
  */
 @ToString
 public class Configuration {
 
+    public static final int MAX_LABEL = 0xFF;
+    public static final int MAX_RANK = 0xFF;
+
     @Getter
     private final MulticyclePermutation spi;
 
@@ -50,60 +53,40 @@ public class Configuration {
         this(new MulticyclePermutation(spi));
     }
 
-    public static float[] signature(final Collection<Cycle> spi, final Cycle pi) {
-        val labelByCycle = new IdentityHashMap<Cycle, Float>();
-        val cycleIndex = cycleIndex(spi, pi);
-        val orientedByCycle = new IdentityHashMap<Cycle, Boolean>();
-        val symbolIndexByOrientedCycle = new IdentityHashMap<Cycle, int[]>();
-        val piInverse = pi.getInverse();
-        val maxSymbol = pi.getMaxSymbol();
-        val piPosition = new int[maxSymbol + 1];
-        val nextLabel = new int[]{1};
+    public static short[] signature(final Collection<Cycle> spi, final Cycle pi) {
+        val kernel = SignatureKernel.get();
+        kernel.load(spi, pi);
+        val signature = new short[pi.size()];
+        kernel.signature(0, false, signature);
+        return signature;
+    }
 
-        for (var i = 0; i < pi.size(); i++) {
-            piPosition[pi.get(i)] = i;
-        }
+    /**
+     * Packs the label of a cycle and the rank of a symbol in it (0 if the cycle is not oriented) into a signature
+     * value. The values compare, as unsigned shorts, by label and then by rank.
+     */
+    public static short pack(final int label, final int rank) {
+        Preconditions.checkArgument(label <= MAX_LABEL && rank <= MAX_RANK,
+                "Label %s or rank %s out of the signature range", label, rank);
+        return (short) (label << 8 | rank);
+    }
 
-        val signature = new float[pi.size()];
-
-        for (var i = 0; i < signature.length; i++) {
-            val symbol = pi.get(i);
-            val cycle = cycleIndex[symbol];
-            val oriented = orientedByCycle.computeIfAbsent(cycle, c ->
-                    !areSymbolsInCyclicOrder(piInverse, c.getSymbols()));
-            if (oriented) {
-                symbolIndexByOrientedCycle.computeIfAbsent(cycle, c -> {
-                    val symbolIndex = new int[maxSymbol + 1];
-                    val cycleSymbols = c.getSymbols();
-                    var minPos = Integer.MAX_VALUE;
-                    var minCycleIdx = 0;
-
-                    for (var j = 0; j < cycleSymbols.length; j++) {
-                        val pos = piPosition[cycleSymbols[j]];
-                        if (pos < minPos) {
-                            minPos = pos;
-                            minCycleIdx = j;
-                        }
-                    }
-
-                    for (var k = 0; k < cycleSymbols.length; k++) {
-                        symbolIndex[cycleSymbols[(minCycleIdx + k) % cycleSymbols.length]] = k + 1;
-                    }
-                    return symbolIndex;
-                });
-            }
-            val label = labelByCycle.computeIfAbsent(cycle, c -> (float) nextLabel[0]++);
-            signature[i] = oriented ? label + (float) symbolIndexByOrientedCycle.get(cycle)[symbol] / 100 : label;
-        }
+    public static int label(final short value) {
+        return (value & 0xFFFF) >>> 8;
+    }
 
-        return signature;
+    /**
+     * @return the rank of the symbol in its cycle, or 0 if the cycle is not oriented
+     */
+    public static int rank(final short value) {
+        return value & 0xFF;
     }
 
-    public static Configuration ofSignature(final float[] signature) {
+    public static Configuration ofSignature(final short[] signature) {
         val pi = CANONICAL_PI[signature.length];
         var maxLabel = 0;
         for (val value : signature) {
-            val label = (int) value;
+            val label = label(value);
             if (label > maxLabel) {
                 maxLabel = label;
             }
@@ -112,9 +95,9 @@ public class Configuration {
         val cycleSizes = new int[maxLabel + 1];
         val orientedSizes = new int[maxLabel + 1];
         for (val value : signature) {
-            val label = (int) value;
+            val label = label(value);
             cycleSizes[label]++;
-            if (value % 1 > 0) {
+            if (rank(value) > 0) {
                 orientedSizes[label]++;
             }
         }
@@ -133,11 +116,10 @@ public class Configuration {
         val cycleFillIdx = new int[maxLabel + 1];
         for (var i = signature.length - 1; i >= 0; i--) {
             val value = signature[i];
-            val label = (int) value;
+            val label = label(value);
             cyclesByLabel[label][cycleFillIdx[label]++] = i;
-            if (value % 1 > 0) {
-                val rank = Math.round((value - label) * 100f);
-                orientedCyclesByLabel[label][rank - 1] = pi.get(i);
+            if (rank(value) > 0) {
+                orientedCyclesByLabel[label][rank(value) - 1] = pi.get(i);
             }
         }
 
@@ -153,47 +135,64 @@ public class Configuration {
         return new Configuration(spi, pi);
     }
 
+    /**
+     * @return the configuration with the given signature, whose canonical signature is already known
+     */
+    public static Configuration ofSignature(final short[] signature, final short[] canonicalSignature) {
+        val configuration = ofSignature(signature);
+        if (Arrays.equals(signature, canonicalSignature)) {
+            configuration.canonical = configuration;
+        } else {
+            configuration.canonical = ofSignature(canonicalSignature);
+            configuration.canonical.canonical = configuration.canonical;
+        }
+        return configuration;
+    }
+
+    /**
+     * @return the canonical signature of the configuration whose signature is the first <code>length</code> values of
+     * <code>signature</code>, computed without building the configuration
+     */
+    public static short[] canonicalSignature(final short[] signature, final int length) {
+        val kernel = SignatureKernel.get();
+        kernel.load(signature, length);
+        return kernel.canonicalSignature();
+    }
+
+    /**
+     * @return the equivalent configuration with the lexicographically least signature
+     */
     public Configuration getCanonical() {
         if (canonical == null) {
-            float[] canonicalSignature = null;
-            var leastHashCode = Integer.MAX_VALUE;
-
-            for (var it = getEquivalentSignatures().iterator(); it.hasNext(); ) {
-                val equivalentSignature = it.next();
-                val hashCode = equivalentSignature.hashCode();
-
-                if (hashCode < leastHashCode) {
-                    leastHashCode = hashCode;
-                    canonicalSignature = equivalentSignature.content;
-                } else if (hashCode == leastHashCode) {
-                    canonicalSignature = least(equivalentSignature.content, canonicalSignature);
-                }
-            }
-
-            canonical = ofSignature(canonicalSignature);
+            val result = ofSignature(CanonicalCache.get(signature.getContent(), this::computeCanonicalSignature));
+            // the canonical configuration is its own canonical form
+            result.canonical = result;
+            canonical = result;
         }
 
         return canonical;
     }
 
-    private static float[] least(final float[] signature1, final float[] signature2) {
-        return Arrays.compare(signature1, signature2) == -1 ? signature1 : signature2;
+    private short[] computeCanonicalSignature() {
+        val kernel = SignatureKernel.get();
+        kernel.load(spi, pi);
+        return kernel.canonicalSignature();
     }
 
     public Stream<Signature> getEquivalentSignatures() {
-        return IntStream.range(0, pi.size()).boxed().flatMap(i -> {
+        // computed eagerly, the consumers may compute other signatures in between
+        val kernel = SignatureKernel.get();
+        kernel.load(spi, pi);
+        val signatures = new Signature[pi.size() * 2];
+        for (var i = 0; i < pi.size(); i++) {
             val shiftedPi = pi.startingBy(pi.get(i));
-            return Stream.of(new Signature(shiftedPi, signature(spi, shiftedPi), false), mirror(spi, shiftedPi));
-        });
-    }
-
-    private static Signature mirror(final MulticyclePermutation spi, final Cycle pi) {
-        val conjugator = new MulticyclePermutation();
-        for (var i = 0; i < pi.size() / 2; i++) {
-            conjugator.add(Cycle.of(pi.get(i), pi.get(pi.size() - 1 - i)));
+            for (var m = 0; m < 2; m++) {
+                val content = new short[pi.size()];
+                kernel.signature(i, m == 1, content);
+                signatures[i * 2 + m] = new Signature(shiftedPi, content, m == 1);
+            }
         }
-        val mirroredSpi = spi.conjugateBy(conjugator).getInverse();
-        return new Signature(pi, signature(mirroredSpi, pi), true);
+        return Arrays.stream(signatures);
     }
 
     public List<Cycle> translatedSorting(final Configuration config, final List<Cycle> sorting) {
@@ -201,12 +200,26 @@ public class Configuration {
                 .filter(c -> Arrays.equals(c.getContent(), config.getSignature().getContent()))
                 .findFirst().get();
 
+        return translatedSorting(config.getPi(), sorting, matchedSignature.pi, matchedSignature.isMirror());
+    }
+
+    /**
+     * Same as {@link #translatedSorting(Configuration, List)}, for a configuration with the given pi whose signature
+     * is the equivalent signature of this configuration with pi starting at its <code>rotation</code>-th symbol,
+     * mirrored if <code>mirror</code> is set. No signature is computed.
+     */
+    public List<Cycle> translatedSorting(final Cycle configPi, final List<Cycle> sorting, final int rotation, final boolean mirror) {
+        return translatedSorting(configPi, sorting, pi.startingBy(pi.get(rotation)), mirror);
+    }
+
+    private static List<Cycle> translatedSorting(final Cycle configPi, final List<Cycle> sorting,
+                                                 final Cycle matchedPi, final boolean mirror) {
         val translatedSorting = new ArrayList<Cycle>();
-        var pi = config.getPi();
-        var signaturePi = matchedSignature.pi;
+        var pi = configPi;
+        var signaturePi = matchedPi;
 
         for (val move : sorting) {
-            if (matchedSignature.isMirror()) {
+            if (mirror) {
                 translatedSorting.add(Cycle.of(
                         signaturePi.get(Math.abs(pi.indexOf(move.get(0)) - pi.size()) - 1),
                         signaturePi.get(Math.abs(pi.indexOf(move.get(1)) - pi.size()) - 1),
@@ -271,14 +284,14 @@ public class Configuration {
         private final Cycle pi;
 
         @Getter
-        private final float[] content;
+        private final short[] content;
 
         @Getter
         private final boolean mirror;
 
         private Integer hashCode;
 
-        public Signature(final Cycle pi, final float[] content, final boolean mirror) {
+        public Signature(final Cycle pi, final short[] content, final boolean mirror) {
             this.pi = pi;
             this.content = content;
             this.mirror = mirror;
@@ -288,35 +301,21 @@ public class Configuration {
         public boolean equals(final Object o) {
             if (this == o) return true;
             if (o == null || getClass() != o.getClass()) return false;
-            val other = (Signature) o;
-            for (var i = 0; i < other.content.length; i++) {
-                if (content[i] != other.content[i]) {
-                    return false;
-                }
-            }
-            return true;
+            return Arrays.equals(content, ((Signature) o).content);
         }
 
-        @SneakyThrows
         @Override
         public int hashCode() {
             if (hashCode == null) {
-                val bas = new ByteArrayOutputStream();
-                val ds = new DataOutputStream(bas);
-                for (val f : content)
-                    ds.writeFloat(f);
-                val bytes = bas.toByteArray();
-                val crc32 = new CRC32();
-                crc32.update(bytes, 0, bytes.length);
-                hashCode = (int) crc32.getValue();
+                hashCode = SignatureKernel.get().hash(content, content.length);
             }
             return hashCode;
         }
 
         @Override
         public String toString() {
-            return "[" + Floats.asList(content).stream()
-                    .map(f -> f % 1 == 0 ? Integer.toString((int) Math.floor(f)) : Float.toString(f))
+            return "[" + Shorts.asList(content).stream()
+                    .map(v -> rank(v) == 0 ? Integer.toString(label(v)) : String.format("%d.%02d", label(v), rank(v)))
                     .collect(Collectors.joining(",")) + "]";
         }
     }
@@ -0,0 +1,145 @@
+package br.unb.cic.tdp.base;
+
+import br.unb.cic.tdp.permutation.OneLinePermutation;
+import lombok.val;
+
+import java.util.Arrays;
+
+/**
+ * Cycle decomposition of spi kept up to date while the search applies and undoes transpositions. The one-line notation
+ * of spi is transformed in place.
+ */
+abstract class CycleState {
+
+    final byte[] oneLine;
+    int evenCycles;
+
+    /**
+     * Zobrist hash of <code>oneLine</code>.
+     */
+    long hash;
+
+    final byte[] temp;
+
+    private int[][] deferredMoves = new int[0][];
+
+    CycleState(final OneLinePermutation spi) {
+        this.oneLine = spi.getOneLine();
+        this.temp = new byte[oneLine.length];
+        this.hash = TranspositionTable.hash(oneLine);
+    }
+
+    /**
+     * @return the most efficient state able to hold spi
+     */
+    static CycleState of(final OneLinePermutation spi) {
+        if (spi.getOneLine().length <= BitCycleState.MAX_SYMBOLS) {
+            return new BitCycleState(spi);
+        }
+        return new DynamicCycleState(spi);
+    }
+
+    /**
+     * Applies the transposition (a b c) to spi, so that <code>oneLine[a]</code> becomes the former
+     * <code>oneLine[c]</code>, <code>oneLine[b]</code> the former <code>oneLine[a]</code> and <code>oneLine[c]</code>
+     * the former <code>oneLine[b]</code>.
+     */
+    abstract void applyMove(int a, int b, int c);
+
+    /**
+     * Undoes the last move applied, which must be (a b c).
+     */
+    abstract void undoMove(int a, int b, int c);
+
+    /**
+     * @return the identifier of the cycle containing <code>symbol</code>
+     */
+    abstract int cycleOf(int symbol);
+
+    abstract int cycleSize(int cycle);
+
+    /**
+     * @return the number of steps from the first symbol of its cycle to <code>symbol</code>
+     */
+    abstract int position(int symbol);
+
+    /**
+     * The variation in the number of even cycles that {@link #applyMove(int, int, int)} would produce, computed
+     * without applying it.
+     */
+    final int delta(final int a, final int b, final int c) {
+        val ia = cycleOf(a);
+        val ib = cycleOf(b);
+        val ic = cycleOf(c);
+
+        if (ia == ib && ib == ic) {
+            val size = cycleSize(ia);
+            val ab = distance(a, b, size);
+            val bc = distance(b, c, size);
+            if (ab + bc > size) {
+                // the symbols appear as a, c, b in the cycle, which is only rearranged
+                return 0;
+            }
+            // a, b, c split the cycle in three
+            return even(ab) + even(bc) + even(size - ab - bc) - even(size);
+        }
+
+        if (ia != ib && ib != ic && ia != ic) {
+            // the three cycles are joined
+            val sa = cycleSize(ia);
+            val sb = cycleSize(ib);
+            val sc = cycleSize(ic);
+            return even(sa + sb + sc) - even(sa) - even(sb) - even(sc);
+        }
+
+        // x and y share a cycle, x preceding y in the move; the segment from y to x is joined to the cycle of z
+        final int x, y, z;
+        if (ia == ib) {
+            x = a; y = b; z = c;
+        } else if (ib == ic) {
+            x = b; y = c; z = a;
+        } else {
+            x = c; y = a; z = b;
+        }
+        val size = cycleSize(cycleOf(x));
+        val other = cycleSize(cycleOf(z));
+        val xy = distance(x, y, size);
+        return even(xy) + even(size - xy + other) - even(size) - even(other);
+    }
+
+    private int distance(final int from, final int to, final int cycleSize) {
+        val d = position(to) - position(from);
+        return d < 0 ? d + cycleSize : d;
+    }
+
+    /**
+     * @return a buffer able to hold one int per transposition, reserved to the given depth of the search
+     */
+    final int[] deferredMoves(final int depth) {
+        if (depth >= deferredMoves.length) {
+            deferredMoves = Arrays.copyOf(deferredMoves, depth + 1);
+        }
+        if (deferredMoves[depth] == null) {
+            val n = oneLine.length;
+            deferredMoves[depth] = new int[n * (n - 1) * (n - 2) / 6];
+        }
+        return deferredMoves[depth];
+    }
+
+    /**
+     * The hash difference between the states before and after the move, in both directions.
+     */
+    static long moveHash(final int a, final int b, final int c, final byte av, final byte bv, final byte cv) {
+        return TranspositionTable.zobrist(a, av & 0xFF) ^ TranspositionTable.zobrist(a, cv & 0xFF)
+                ^ TranspositionTable.zobrist(b, bv & 0xFF) ^ TranspositionTable.zobrist(b, av & 0xFF)
+                ^ TranspositionTable.zobrist(c, cv & 0xFF) ^ TranspositionTable.zobrist(c, bv & 0xFF);
+    }
+
+    static boolean isEvenCycle(final int cycleSize) {
+        return (cycleSize & 1) == 1;
+    }
+
+    static int even(final int cycleSize) {
+        return cycleSize & 1;
+    }
+}
@@ -0,0 +1,175 @@
+package br.unb.cic.tdp.base;
+
+import br.unb.cic.tdp.permutation.OneLinePermutation;
+import lombok.val;
+
+import java.util.Arrays;
+
+/**
+ * Cycle state for any number of symbols, which walks only the cycles touched by each move.
+ */
+final class DynamicCycleState extends CycleState {
+    private final int[] cycleId;
+    private final int[] cycleSize;
+    /**
+     * Number of steps from the symbol labelling the cycle (the cycle id) to each symbol.
+     */
+    private final int[] cyclePos;
+
+    private final int[] visitedStamp;
+    private int stamp;
+    private final int[] touched;
+    private int touchedSize;
+
+    private final int[] cycleStamp;
+    private int cycleStampVal;
+
+    private long[] undoStack;
+    private int undoTop;
+
+    DynamicCycleState(final OneLinePermutation spi) {
+        super(spi);
+        this.cycleId = new int[oneLine.length];
+        this.cycleSize = new int[oneLine.length];
+        this.cyclePos = new int[oneLine.length];
+        this.visitedStamp = new int[oneLine.length];
+        this.touched = new int[oneLine.length];
+        this.cycleStamp = new int[oneLine.length];
+        this.undoStack = new long[64];
+        Arrays.fill(this.cycleId, -1);
+        buildInitialCycles();
+    }
+
+    private void buildInitialCycles() {
+        val visited = new boolean[oneLine.length];
+        for (int s = 0; s < oneLine.length; s++) {
+            if (visited[s]) continue;
+
+            val id = s;
+            var size = 0;
+            var cur = s;
+            do {
+                visited[cur] = true;
+                cycleId[cur] = id;
+                cyclePos[cur] = size;
+                size++;
+                cur = oneLine[cur] & 0xFF;
+            } while (cur != s);
+
+            cycleSize[id] = size;
+            if (isEvenCycle(size)) evenCycles++;
+        }
+    }
+
+    @Override
+    int cycleOf(final int symbol) {
+        return cycleId[symbol];
+    }
+
+    @Override
+    int cycleSize(final int cycle) {
+        return cycleSize[cycle];
+    }
+
+    @Override
+    int position(final int symbol) {
+        return cyclePos[symbol];
+    }
+
+    @Override
+    void applyMove(final int a, final int b, final int c) {
+        val av = oneLine[a];
+        val bv = oneLine[b];
+        val cv = oneLine[c];
+        val previousEvenCycles = evenCycles;
+
+        // push undo data
+        if (undoTop == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, undoStack.length * 2);
+        }
+        undoStack[undoTop++] = (av & 0xFFL) | ((bv & 0xFFL) << 8) | ((cv & 0xFFL) << 16) | ((long) previousEvenCycles << 24);
+
+        val oldLocalEven = collectLocalEvenAndTouched(a, b, c);
+        oneLine[a] = cv;
+        oneLine[b] = av;
+        oneLine[c] = bv;
+        hash ^= moveHash(a, b, c, av, bv, cv);
+        val newLocalEven = relabelTouchedAndCountEven();
+        evenCycles += (newLocalEven - oldLocalEven);
+    }
+
+    @Override
+    void undoMove(final int a, final int b, final int c) {
+        val packed = undoStack[--undoTop];
+        val av = (byte) (packed & 0xFF);
+        val bv = (byte) ((packed >>> 8) & 0xFF);
+        val cv = (byte) ((packed >>> 16) & 0xFF);
+        val previousEvenCycles = (int) (packed >>> 24);
+
+        oneLine[a] = av;
+        oneLine[b] = bv;
+        oneLine[c] = cv;
+        hash ^= moveHash(a, b, c, av, bv, cv);
+
+        collectLocalEvenAndTouched(a, b, c);
+        relabelTouchedAndCountEven();
+        evenCycles = previousEvenCycles;
+    }
+
+    private int collectLocalEvenAndTouched(final int a, final int b, final int c) {
+        stamp++;
+        touchedSize = 0;
+        cycleStampVal++;
+        var localEven = 0;
+
+        touchedSize = collectComponent(a, touchedSize);
+        touchedSize = collectComponent(b, touchedSize);
+        touchedSize = collectComponent(c, touchedSize);
+
+        for (int i = 0; i < touchedSize; i++) {
+            val id = cycleId[touched[i]];
+            if (cycleStamp[id] != cycleStampVal) {
+                cycleStamp[id] = cycleStampVal;
+                if (isEvenCycle(cycleSize[id])) localEven++;
+            }
+        }
+        return localEven;
+    }
+
+    private int relabelTouchedAndCountEven() {
+        var localEven = 0;
+
+        for (int i = 0; i < touchedSize; i++) {
+            cycleId[touched[i]] = -1;
+        }
+
+        for (int i = 0; i < touchedSize; i++) {
+            val s = touched[i];
+            if (cycleId[s] != -1) continue;
+
+            val id = s;
+            var size = 0;
+            var cur = s;
+            do {
+                cycleId[cur] = id;
+                cyclePos[cur] = size;
+                size++;
+                cur = oneLine[cur] & 0xFF;
+            } while (cur != s);
+
+            cycleSize[id] = size;
+            if (isEvenCycle(size)) localEven++;
+        }
+        return localEven;
+    }
+
+    private int collectComponent(final int start, int touchedSize) {
+        var cur = start;
+        while (visitedStamp[cur] != stamp) {
+            visitedStamp[cur] = stamp;
+            touched[touchedSize++] = cur;
+            cur = oneLine[cur] & 0xFF;
+        }
+        return touchedSize;
+    }
+}
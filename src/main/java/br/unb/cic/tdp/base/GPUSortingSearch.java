@@ -10,7 +10,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 
-public class GPUSortingSearch {
+public class GPUSortingSearch implements SortingBackend {
 
     static {
         System.loadLibrary("tdp1375_jni");
@@ -45,6 +45,7 @@ public class GPUSortingSearch {
     );
 
     @SneakyThrows
+    @Override
     public List<int[]> search(
             final byte[] pi,
             final OneLinePermutation spi,
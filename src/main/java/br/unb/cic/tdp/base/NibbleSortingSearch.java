@@ -0,0 +1,325 @@
+package br.unb.cic.tdp.base;
+
+import br.unb.cic.tdp.permutation.OneLinePermutation;
+import lombok.val;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static br.unb.cic.tdp.base.CycleState.even;
+import static br.unb.cic.tdp.base.SortingSearch.isAccepted;
+import static br.unb.cic.tdp.base.SortingSearch.isPruned;
+
+/**
+ * {@link SortingSearch} for permutations of up to {@value #MAX_SYMBOLS} symbols. pi and spi are packed in a long each,
+ * one symbol per nibble, so that a transposition is a few shifts and masks and the search state is passed by value,
+ * with nothing to undo. The moves are tried in the same order and pruned by the same rules as in
+ * {@link SortingSearch}, hence both find the same sequences. Besides the buffers allocated once per search, the search
+ * does not allocate.
+ */
+public class NibbleSortingSearch {
+
+    public static final int MAX_SYMBOLS = 16;
+
+    /**
+     * <code>SEGMENTS[i][j]</code> selects the nibbles of the positions i (inclusive) to j (exclusive).
+     */
+    private static final long[][] SEGMENTS = new long[MAX_SYMBOLS + 1][MAX_SYMBOLS + 1];
+
+    static {
+        for (int i = 0; i <= MAX_SYMBOLS; i++) {
+            for (int j = i; j <= MAX_SYMBOLS; j++) {
+                val length = j - i;
+                SEGMENTS[i][j] = length == MAX_SYMBOLS ? -1L : ((1L << (4 * length)) - 1) << (4 * i);
+            }
+        }
+    }
+
+    private final int n;
+    private final int initialNumberOfEvenCycles;
+    private final float minRate;
+    private final int maxMoves;
+    private final boolean fullSorting;
+    private final TranspositionTable table;
+
+    private final int[] movesFlat;
+    private final int[][] deferredMoves;
+
+    private NibbleSortingSearch(
+            final int n,
+            final int initialNumberOfEvenCycles,
+            final float minRate,
+            final int maxMoves,
+            final boolean fullSorting,
+            final TranspositionTable table
+    ) {
+        this.n = n;
+        this.initialNumberOfEvenCycles = initialNumberOfEvenCycles;
+        this.minRate = minRate;
+        this.maxMoves = maxMoves;
+        this.fullSorting = fullSorting;
+        this.table = table;
+        this.movesFlat = new int[maxMoves * 3];
+        this.deferredMoves = new int[maxMoves][n * (n - 1) * (n - 2) / 6];
+    }
+
+    /**
+     * Same contract as {@link SortingSearch#searchForSortingSeq(byte[], OneLinePermutation, int, float, int, boolean)},
+     * except that pi and spi are left untouched.
+     */
+    public static List<int[]> searchForSortingSeq(
+            final byte[] pi,
+            final OneLinePermutation spi,
+            final int initialNumberOfEvenCycles,
+            final float minRate,
+            final int maxMoves,
+            final boolean fullSorting
+    ) {
+        return searchForSortingSeq(pi, spi, initialNumberOfEvenCycles, minRate, maxMoves, fullSorting, null);
+    }
+
+    static List<int[]> searchForSortingSeq(
+            final byte[] pi,
+            final OneLinePermutation spi,
+            final int initialNumberOfEvenCycles,
+            final float minRate,
+            final int maxMoves,
+            final boolean fullSorting,
+            final TranspositionTable table
+    ) {
+        if (pi.length > MAX_SYMBOLS) {
+            throw new IllegalArgumentException("At most " + MAX_SYMBOLS + " symbols are supported");
+        }
+        if (pi.length < 3 || maxMoves == 0) {
+            return Collections.emptyList();
+        }
+
+        val search = new NibbleSortingSearch(pi.length, initialNumberOfEvenCycles, minRate, maxMoves, fullSorting, table);
+        val packedSpi = pack(spi.getOneLine());
+        val depth = search.search(pack(pi), packedSpi, 0, countEvenCycles(packedSpi, pi.length));
+        if (depth == 0) return Collections.emptyList();
+
+        val result = new ArrayList<int[]>(depth);
+        for (int m = 0; m < depth; m++) {
+            result.add(new int[]{search.movesFlat[m * 3], search.movesFlat[m * 3 + 1], search.movesFlat[m * 3 + 2]});
+        }
+        return result;
+    }
+
+    private int search(final long pi, final long spi, final int depth, final int numberOfEvenCycles) {
+        val numberOfEvenCyclesCreatedSoFar = numberOfEvenCycles - initialNumberOfEvenCycles;
+
+        if (isAccepted(n, numberOfEvenCycles, numberOfEvenCyclesCreatedSoFar, depth, minRate, fullSorting)) {
+            return depth;
+        }
+
+        if (isPruned(n, numberOfEvenCycles, numberOfEvenCyclesCreatedSoFar, depth, minRate, maxMoves, fullSorting)) {
+            return 0;
+        }
+
+        val movesLeft = maxMoves - depth;
+        val key = table != null ? mix(spi) : 0;
+        if (table != null && table.hasFailed(key, depth, movesLeft)) {
+            return 0;
+        }
+
+        // cycle of each symbol (its smallest symbol), position in the cycle and cycle sizes minus one, one per nibble
+        var cycles = 0L;
+        var positions = 0L;
+        var sizes = 0L;
+        var visited = 0;
+        for (int s = 0; s < n; s++) {
+            if ((visited & (1 << s)) != 0) continue;
+
+            var position = 0;
+            var cur = s;
+            do {
+                visited |= 1 << cur;
+                cycles |= (long) s << (4 * cur);
+                positions |= (long) position++ << (4 * cur);
+                cur = get(spi, cur);
+            } while (cur != s);
+            sizes |= (long) (position - 1) << (4 * s);
+        }
+
+        // 2-moves are tried as soon as they are found, 0-moves are queued from the front and (-2)-moves from the back
+        val deferred = deferredMoves[depth];
+        var zeroMoves = 0;
+        var minusTwoMoves = deferred.length;
+
+        for (var i = 0; i < n - 2; i++) {
+            val a = get(pi, i);
+
+            for (var j = i + 1; j < n - 1; j++) {
+                val b = get(pi, j);
+
+                for (var k = j + 1; k < n; k++) {
+                    val c = get(pi, k);
+
+                    val delta = delta(a, b, c, cycles, positions, sizes);
+                    if (!isAccepted(n, numberOfEvenCycles + delta, numberOfEvenCyclesCreatedSoFar + delta, depth + 1, minRate, fullSorting) &&
+                            isPruned(n, numberOfEvenCycles + delta, numberOfEvenCyclesCreatedSoFar + delta, depth + 1, minRate, maxMoves, fullSorting)) {
+                        continue;
+                    }
+
+                    if (delta == 2) {
+                        val result = tryMove(pi, spi, depth, numberOfEvenCycles + 2, i, j, k);
+                        if (result > 0) {
+                            return result;
+                        }
+                    } else if (delta == 0) {
+                        deferred[zeroMoves++] = i | (j << 8) | (k << 16);
+                    } else {
+                        deferred[--minusTwoMoves] = i | (j << 8) | (k << 16);
+                    }
+                }
+            }
+        }
+
+        for (int m = 0; m < zeroMoves; m++) {
+            val move = deferred[m];
+            val result = tryMove(pi, spi, depth, numberOfEvenCycles, move & 0xFF, (move >>> 8) & 0xFF, move >>> 16);
+            if (result > 0) {
+                return result;
+            }
+        }
+
+        for (int m = deferred.length - 1; m >= minusTwoMoves; m--) {
+            val move = deferred[m];
+            val result = tryMove(pi, spi, depth, numberOfEvenCycles - 2, move & 0xFF, (move >>> 8) & 0xFF, move >>> 16);
+            if (result > 0) {
+                return result;
+            }
+        }
+
+        if (table != null) {
+            table.recordFailure(key, depth, movesLeft);
+        }
+
+        return 0;
+    }
+
+    private int tryMove(final long pi, final long spi, final int depth, final int numberOfEvenCycles,
+                        final int i, final int j, final int k) {
+        val a = get(pi, i);
+        val b = get(pi, j);
+        val c = get(pi, k);
+
+        val base = depth * 3;
+        movesFlat[base] = a;
+        movesFlat[base + 1] = b;
+        movesFlat[base + 2] = c;
+
+        return search(transpose(pi, i, j, k), applyMove(spi, a, b, c), depth + 1, numberOfEvenCycles);
+    }
+
+    /**
+     * Exchanges the segments [i, j) and [j, k) of pi.
+     */
+    static long transpose(final long pi, final int i, final int j, final int k) {
+        return (pi & ~SEGMENTS[i][k])
+                | ((pi & SEGMENTS[j][k]) >>> (4 * (j - i)))
+                | ((pi & SEGMENTS[i][j]) << (4 * (k - j)));
+    }
+
+    /**
+     * Same as {@link CycleState#applyMove(int, int, int)}.
+     */
+    static long applyMove(final long spi, final int a, final int b, final int c) {
+        val av = get(spi, a);
+        val bv = get(spi, b);
+        val cv = get(spi, c);
+        return set(set(set(spi, a, cv), b, av), c, bv);
+    }
+
+    /**
+     * Same as {@link CycleState#delta(int, int, int)}, reading the cycle structure from the packed nibbles.
+     */
+    private static int delta(final int a, final int b, final int c, final long cycles, final long positions, final long sizes) {
+        val ia = get(cycles, a);
+        val ib = get(cycles, b);
+        val ic = get(cycles, c);
+
+        if (ia == ib && ib == ic) {
+            val size = get(sizes, ia) + 1;
+            val ab = distance(a, b, positions, size);
+            val bc = distance(b, c, positions, size);
+            if (ab + bc > size) {
+                return 0;
+            }
+            return even(ab) + even(bc) + even(size - ab - bc) - even(size);
+        }
+
+        if (ia != ib && ib != ic && ia != ic) {
+            val sa = get(sizes, ia) + 1;
+            val sb = get(sizes, ib) + 1;
+            val sc = get(sizes, ic) + 1;
+            return even(sa + sb + sc) - even(sa) - even(sb) - even(sc);
+        }
+
+        final int x, y, z;
+        if (ia == ib) {
+            x = a; y = b; z = c;
+        } else if (ib == ic) {
+            x = b; y = c; z = a;
+        } else {
+            x = c; y = a; z = b;
+        }
+        val size = get(sizes, get(cycles, x)) + 1;
+        val other = get(sizes, get(cycles, z)) + 1;
+        val xy = distance(x, y, positions, size);
+        return even(xy) + even(size - xy + other) - even(size) - even(other);
+    }
+
+    private static int distance(final int from, final int to, final long positions, final int cycleSize) {
+        val d = get(positions, to) - get(positions, from);
+        return d < 0 ? d + cycleSize : d;
+    }
+
+    private static int countEvenCycles(final long spi, final int n) {
+        var count = 0;
+        var visited = 0;
+        for (int s = 0; s < n; s++) {
+            if ((visited & (1 << s)) != 0) continue;
+
+            var size = 0;
+            var cur = s;
+            do {
+                visited |= 1 << cur;
+                size++;
+                cur = get(spi, cur);
+            } while (cur != s);
+            count += even(size);
+        }
+        return count;
+    }
+
+    static long pack(final byte[] symbols) {
+        var packed = 0L;
+        for (int p = 0; p < symbols.length; p++) {
+            packed |= (long) (symbols[p] & 0xF) << (4 * p);
+        }
+        return packed;
+    }
+
+    private static int get(final long packed, final int index) {
+        return (int) (packed >>> (4 * index)) & 0xF;
+    }
+
+    private static long set(final long packed, final int index, final int value) {
+        return (packed & ~(0xFL << (4 * index))) | ((long) value << (4 * index));
+    }
+
+    /**
+     * A bijective mix of the bits of spi, so that distinct states never share a transposition table key.
+     */
+    private static long mix(long spi) {
+        spi ^= spi >>> 33;
+        spi *= 0xff51afd7ed558ccdL;
+        spi ^= spi >>> 33;
+        spi *= 0xc4ceb9fe1a85ec53L;
+        spi ^= spi >>> 33;
+        return spi;
+    }
+}
@@ -0,0 +1,116 @@
+package br.unb.cic.tdp.base;
+
+import lombok.val;
+
+import java.util.Arrays;
+
+import static br.unb.cic.tdp.base.Configuration.label;
+import static br.unb.cic.tdp.base.Configuration.rank;
+
+/**
+ * Fingerprint of a signature that is the same for all the equivalent signatures of a configuration, computed in
+ * O(nk) for n symbols and k cycles instead of the O(n^2) of the canonical form. Configurations with different
+ * fingerprints are not equivalent; those with the same fingerprint still have to be compared by their canonical form.
+ * <p>
+ * Each cycle is described by its length, whether it is oriented, the number of cycles it interleaves with and the
+ * number of times pi alternates between it and the other cycles, which do not change when pi is rotated or mirrored
+ * nor when the cycles are relabelled. The fingerprint hashes the sorted descriptions, computed on per-thread scratch
+ * arrays.
+ */
+public final class SignatureInvariant {
+
+    private static final ThreadLocal<SignatureInvariant> SCRATCH = ThreadLocal.withInitial(SignatureInvariant::new);
+
+    private int[] lengths = new int[0];
+    private boolean[] oriented = new boolean[0];
+    private int[] alternations = new int[0];
+    private int[] last = new int[0];
+    private long[] descriptions = new long[0];
+
+    private SignatureInvariant() {
+    }
+
+    public static long of(final short[] signature) {
+        return of(signature, signature.length);
+    }
+
+    /**
+     * @return the fingerprint of the first <code>length</code> values of <code>signature</code>
+     */
+    public static long of(final short[] signature, final int length) {
+        return SCRATCH.get().compute(signature, length);
+    }
+
+    private long compute(final short[] signature, final int n) {
+        var cycles = 0;
+        for (int p = 0; p < n; p++) {
+            cycles = Math.max(cycles, label(signature[p]));
+        }
+        reserve(cycles + 1);
+
+        for (int p = 0; p < n; p++) {
+            lengths[label(signature[p])]++;
+            oriented[label(signature[p])] |= rank(signature[p]) > 0;
+        }
+
+        // alternations[x * (cycles + 1) + y]: times pi, taken cyclically and restricted to the cycles x and y, goes
+        // from y to x
+        val stride = cycles + 1;
+        for (int p = 0; p < n; p++) {
+            last[label(signature[p])] = p - n;
+        }
+        for (int p = 0; p < n; p++) {
+            val x = label(signature[p]);
+            for (int y = 1; y <= cycles; y++) {
+                if (y != x && last[y] > last[x]) {
+                    alternations[x * stride + y]++;
+                }
+            }
+            last[x] = p;
+        }
+
+        for (int x = 1; x <= cycles; x++) {
+            var interleaved = 0;
+            var alternated = 0;
+            for (int y = 1; y <= cycles; y++) {
+                // two cycles not interleaving alternate once each way
+                if (alternations[x * stride + y] > 1) {
+                    interleaved++;
+                }
+                alternated += alternations[x * stride + y];
+            }
+            descriptions[x - 1] = (long) lengths[x] << 40 | (oriented[x] ? 1L : 0L) << 39
+                    | (long) interleaved << 24 | alternated;
+        }
+        Arrays.sort(descriptions, 0, cycles);
+
+        var hash = (long) n;
+        for (int i = 0; i < cycles; i++) {
+            hash = mix(hash * 0x9E3779B97F4A7C15L + descriptions[i]);
+        }
+        return hash;
+    }
+
+    private void reserve(final int size) {
+        if (lengths.length < size) {
+            lengths = new int[size];
+            oriented = new boolean[size];
+            last = new int[size];
+            descriptions = new long[size];
+        } else {
+            Arrays.fill(lengths, 0, size, 0);
+            Arrays.fill(oriented, 0, size, false);
+        }
+        if (alternations.length < size * size) {
+            alternations = new int[size * size];
+        } else {
+            Arrays.fill(alternations, 0, size * size, 0);
+        }
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,257 @@
+package br.unb.cic.tdp.base;
+
+import br.unb.cic.tdp.permutation.Cycle;
+import lombok.val;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.zip.CRC32;
+
+/**
+ * Computes, hashes and compares signatures on per-thread scratch arrays, so that canonicalizing a configuration only
+ * allocates its result.
+ * <p>
+ * spi is loaded as a successor function over the indexes of pi. The signature with pi starting at its
+ * <code>rotation</code>-th symbol is computed from the successors shifted by <code>rotation</code>. The mirrored one,
+ * which conjugates spi by the reversal of the shifted pi and inverts it, maps the index p to the predecessor of the
+ * reversed index, reversed. The canonical signature is the lexicographically least of them; candidates are compared
+ * with the least one found so far as they are labelled, so most of them are discarded after a few values.
+ */
+final class SignatureKernel {
+
+    private static final ThreadLocal<SignatureKernel> KERNEL = ThreadLocal.withInitial(SignatureKernel::new);
+
+    private final CRC32 crc32 = new CRC32();
+
+    private int n;
+
+    /**
+     * Index in pi of the successor and of the predecessor by spi of the symbol at each index of pi.
+     */
+    private int[] next = new int[0];
+    private int[] previous = new int[0];
+
+    /**
+     * Label and rank (0 if its cycle is not oriented) of each index of the signature being computed, valid where
+     * <code>stamps</code> holds the current stamp.
+     */
+    private int[] labels = new int[0];
+    private int[] ranks = new int[0];
+    private int[] stamps = new int[0];
+    private int stamp;
+
+    /**
+     * Scratch of {@link #load(short[], int)}: the indexes of the cycles, grouped by label, and where each label starts.
+     */
+    private int[] indexes = new int[0];
+    private int[] offsets = new int[0];
+    private int[] fill = new int[0];
+
+    private short[] least = new short[0];
+    private byte[] bytes = new byte[0];
+
+    private SignatureKernel() {
+    }
+
+    static SignatureKernel get() {
+        return KERNEL.get();
+    }
+
+    void load(final Collection<Cycle> spi, final Cycle pi) {
+        reserve(pi.size());
+
+        for (int i = 0; i < n; i++) {
+            next[i] = i;
+            previous[i] = i;
+        }
+
+        val index = pi.getSymbolIndexes();
+        for (val cycle : spi) {
+            val symbols = cycle.getSymbols();
+            for (int j = 0; j < symbols.length; j++) {
+                val from = index[symbols[j]];
+                val to = index[symbols[(j + 1) % symbols.length]];
+                next[from] = to;
+                previous[to] = from;
+            }
+        }
+    }
+
+    /**
+     * Loads the configuration whose signature is the first <code>length</code> values of <code>signature</code>,
+     * with pi = (0 1 ... n-1): as built by {@link Configuration#ofSignature(short[])}, an unoriented cycle maps each
+     * index to the previous index of its cycle, and an oriented one each rank to the next.
+     */
+    void load(final short[] signature, final int length) {
+        reserve(length);
+
+        // the indexes of each cycle, grouped by label, by rank if oriented and ascending otherwise
+        Arrays.fill(offsets, 0, n + 2, 0);
+        for (int p = 0; p < n; p++) {
+            offsets[Configuration.label(signature[p]) + 1]++;
+        }
+        for (int label = 1; label <= n; label++) {
+            offsets[label + 1] += offsets[label];
+        }
+        System.arraycopy(offsets, 0, fill, 0, n + 1);
+        for (int p = 0; p < n; p++) {
+            val label = Configuration.label(signature[p]);
+            val rank = Configuration.rank(signature[p]);
+            indexes[rank > 0 ? offsets[label] + rank - 1 : fill[label]] = p;
+            fill[label]++;
+        }
+
+        for (int label = 1; label <= n; label++) {
+            val from = offsets[label];
+            val to = offsets[label + 1];
+            if (from == to) {
+                continue;
+            }
+            val oriented = Configuration.rank(signature[indexes[from]]) > 0;
+            for (int i = from; i < to; i++) {
+                val successor = oriented ? (i + 1 < to ? i + 1 : from) : (i > from ? i - 1 : to - 1);
+                next[indexes[i]] = indexes[successor];
+                previous[indexes[successor]] = indexes[i];
+            }
+        }
+    }
+
+    private void reserve(final int size) {
+        n = size;
+        if (next.length < n) {
+            next = new int[n];
+            previous = new int[n];
+            labels = new int[n];
+            ranks = new int[n];
+            stamps = new int[n];
+            least = new short[n];
+            bytes = new byte[n * 2];
+            indexes = new int[n];
+            offsets = new int[n + 2];
+            fill = new int[n + 1];
+        }
+    }
+
+    /**
+     * Writes to <code>out</code> the signature of the loaded configuration with pi starting at its
+     * <code>rotation</code>-th symbol, mirrored if <code>mirror</code> is set.
+     */
+    void signature(final int rotation, final boolean mirror, final short[] out) {
+        nextStamp();
+        var nextLabel = 1;
+        for (int p = 0; p < n; p++) {
+            if (stamps[p] != stamp) {
+                labelCycle(p, nextLabel++, rotation, mirror);
+            }
+            out[p] = value(p);
+        }
+    }
+
+    /**
+     * @return the lexicographically least of the equivalent signatures of the loaded configuration
+     */
+    short[] canonicalSignature() {
+        signature(0, false, least);
+        for (int rotation = 0; rotation < n; rotation++) {
+            for (int m = 0; m < 2; m++) {
+                val mirror = m == 1;
+                if ((rotation > 0 || mirror) && precedesLeast(rotation, mirror)) {
+                    signature(rotation, mirror, least);
+                }
+            }
+        }
+        return Arrays.copyOf(least, n);
+    }
+
+    /**
+     * Compares the signature with the given rotation and mirror with the least one found so far, labelling its
+     * cycles only as they are reached and stopping at the first value that differs.
+     */
+    private boolean precedesLeast(final int rotation, final boolean mirror) {
+        nextStamp();
+        var nextLabel = 1;
+        for (int p = 0; p < n; p++) {
+            if (stamps[p] != stamp) {
+                labelCycle(p, nextLabel++, rotation, mirror);
+            }
+            val value = value(p);
+            if (value != least[p]) {
+                return Short.compareUnsigned(value, least[p]) < 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Labels the cycle whose first index is <code>p</code>. The cycle is oriented unless its indexes decrease
+     * cyclically, in which case its indexes are also ranked starting from p.
+     */
+    private void labelCycle(final int p, final int label, final int rotation, final boolean mirror) {
+        var ascents = 0;
+        var q = p;
+        do {
+            val successor = successor(q, rotation, mirror);
+            if (successor > q) {
+                ascents++;
+            }
+            stamps[q] = stamp;
+            labels[q] = label;
+            ranks[q] = 0;
+            q = successor;
+        } while (q != p);
+
+        if (label > Configuration.MAX_LABEL) {
+            throw new IllegalArgumentException("More than " + Configuration.MAX_LABEL + " cycles");
+        }
+
+        if (ascents > 1) {
+            var rank = 1;
+            do {
+                ranks[q] = rank++;
+                q = successor(q, rotation, mirror);
+            } while (q != p);
+
+            if (rank - 1 > Configuration.MAX_RANK) {
+                throw new IllegalArgumentException("Oriented cycle longer than " + Configuration.MAX_RANK);
+            }
+        }
+    }
+
+    private int successor(final int p, final int rotation, final boolean mirror) {
+        if (mirror) {
+            return n - 1 - shift(previous[(n - 1 - p + rotation) % n] - rotation);
+        }
+        return shift(next[(p + rotation) % n] - rotation);
+    }
+
+    private int shift(final int index) {
+        return index < 0 ? index + n : index;
+    }
+
+    private short value(final int p) {
+        return (short) (labels[p] << 8 | ranks[p]);
+    }
+
+    private void nextStamp() {
+        if (++stamp == 0) {
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * @return the CRC32 of the big-endian bytes of the first <code>length</code> values of <code>signature</code>
+     */
+    int hash(final short[] signature, final int length) {
+        if (bytes.length < length * 2) {
+            bytes = new byte[length * 2];
+        }
+        for (int i = 0; i < length; i++) {
+            bytes[i * 2] = (byte) (signature[i] >>> 8);
+            bytes[i * 2 + 1] = (byte) signature[i];
+        }
+        crc32.reset();
+        crc32.update(bytes, 0, length * 2);
+        return (int) crc32.getValue();
+    }
+}
@@ -0,0 +1,78 @@
+package br.unb.cic.tdp.base;
+
+import br.unb.cic.tdp.permutation.OneLinePermutation;
+import lombok.val;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A search engine able to find sequences of transpositions for the proof generation.
+ */
+public interface SortingBackend {
+
+    /**
+     * Searches for a sequence of at most <code>maxMoves</code> transpositions whose approximation ratio is at least
+     * <code>minRate</code>. If <code>fullSorting</code> is set, the sequence must also fix all the symbols in spi.
+     *
+     * @return the moves as triples of symbols (a, b, c), or an empty list if no such sequence exists
+     */
+    List<int[]> search(
+            byte[] pi,
+            OneLinePermutation spi,
+            int initialEvenCycles,
+            float minRate,
+            int maxMoves,
+            boolean fullSorting
+    );
+
+    /**
+     * Runs {@link #search(byte[], OneLinePermutation, int, float, int, boolean)} with each of the increasing bounds
+     * in turn, until a sequence is found. Backends able to carry work over from one bound to the next should do so.
+     *
+     * @return the sequence found with the first bound that has one, or an empty list
+     */
+    default List<int[]> searchDeepening(
+            final byte[] pi,
+            final OneLinePermutation spi,
+            final int initialEvenCycles,
+            final float minRate,
+            final int[] bounds,
+            final boolean fullSorting
+    ) {
+        return searchDeepening(pi, spi, initialEvenCycles, minRate, bounds, fullSorting, (maxMoves, found, nanos) -> {
+        });
+    }
+
+    /**
+     * Same as {@link #searchDeepening(byte[], OneLinePermutation, int, float, int[], boolean)}, reporting each bound
+     * searched to <code>listener</code>.
+     */
+    default List<int[]> searchDeepening(
+            final byte[] pi,
+            final OneLinePermutation spi,
+            final int initialEvenCycles,
+            final float minRate,
+            final int[] bounds,
+            final boolean fullSorting,
+            final StageListener listener
+    ) {
+        for (val maxMoves : bounds) {
+            val start = System.nanoTime();
+            val sorting = search(pi, spi, initialEvenCycles, minRate, maxMoves, fullSorting);
+            listener.stageCompleted(maxMoves, !sorting.isEmpty(), System.nanoTime() - start);
+            if (!sorting.isEmpty()) {
+                return sorting;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Receives the outcome of each bound of a {@link #searchDeepening} call.
+     */
+    interface StageListener {
+
+        void stageCompleted(int maxMoves, boolean found, long nanos);
+    }
+}
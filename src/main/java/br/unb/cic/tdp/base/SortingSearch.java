@@ -5,9 +5,13 @@ import br.unb.cic.tdp.permutation.OneLinePermutation;
 import br.unb.cic.tdp.proof.ProofGenerator;
 import lombok.val;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class SortingSearch {
 
@@ -21,55 +25,139 @@ public class SortingSearch {
             final float minRate,
             final int maxMoves
     ) {
-        val state = new DynamicCycleState(spi);
+        return searchForSortingSeq(pi, spi, initialNumberOfEvenCycles, minRate, maxMoves, true);
+    }
+
+    /**
+     * Find a sequence whose approximation ratio is at least <code>minRate</code>. If <code>fullSorting</code> is not
+     * set, any non-empty prefix of a sorting reaching the ratio is accepted, as in the GPU kernel.
+     */
+    public static List<int[]> searchForSortingSeq(
+            final byte[] pi,
+            final OneLinePermutation spi,
+            final int initialNumberOfEvenCycles,
+            final float minRate,
+            final int maxMoves,
+            final boolean fullSorting
+    ) {
+        return searchForSortingSeq(pi, spi, initialNumberOfEvenCycles, minRate, maxMoves, fullSorting, null);
+    }
+
+    /**
+     * Same as {@link #searchForSortingSeq(byte[], OneLinePermutation, int, float, int, boolean)}, but skips the states
+     * already recorded in <code>table</code> as failed and records the new failures in it. The table must be cleared
+     * between searches with different parameters, except for <code>maxMoves</code>: the failures of a search remain
+     * valid for the same search with a larger bound.
+     */
+    static List<int[]> searchForSortingSeq(
+            final byte[] pi,
+            final OneLinePermutation spi,
+            final int initialNumberOfEvenCycles,
+            final float minRate,
+            final int maxMoves,
+            final boolean fullSorting,
+            final TranspositionTable table
+    ) {
+        val state = CycleState.of(spi);
         val movesFlat = new int[maxMoves * 3];
-        val depth = searchForSortingSeq(pi, movesFlat, 0, initialNumberOfEvenCycles, minRate, maxMoves, state);
+        val depth = searchForSortingSeq(pi, movesFlat, 0, initialNumberOfEvenCycles, minRate, maxMoves, fullSorting, table, null, state);
         if (depth == 0) return Collections.emptyList();
-        val result = new java.util.ArrayList<int[]>(depth);
+        val result = new ArrayList<int[]>(depth);
         for (int m = 0; m < depth; m++) {
             result.add(new int[]{movesFlat[m * 3], movesFlat[m * 3 + 1], movesFlat[m * 3 + 2]});
         }
         return result;
     }
 
-    private static int searchForSortingSeq(
+    /**
+     * Parallel version of {@link #searchForSortingSeq(byte[], OneLinePermutation, int, float, int, boolean)}. The
+     * subtrees rooted at the first <code>splitDepth</code> levels are searched by fork/join tasks, which stop as soon
+     * as a sequence is found. If <code>deterministic</code> is set, a task only stops when a task preceding it in the
+     * sequential order finds a sequence, so that the result is the same as the sequential one.
+     */
+    public static List<int[]> searchForSortingSeqInParallel(
             final byte[] pi,
-            final int[] movesFlat,
-            final int depth,
+            final OneLinePermutation spi,
             final int initialNumberOfEvenCycles,
             final float minRate,
             final int maxMoves,
-            final DynamicCycleState state
+            final boolean fullSorting,
+            final int splitDepth,
+            final boolean deterministic
     ) {
-        val numberOfEvenCycles = state.evenCycles;
+        return searchForSortingSeqInParallel(pi, spi, initialNumberOfEvenCycles, minRate, maxMoves, fullSorting, splitDepth, deterministic, null);
+    }
 
-        if (numberOfEvenCycles == pi.length) {
-            val numberOfEvenCyclesCreatedSoFar = numberOfEvenCycles - initialNumberOfEvenCycles;
-            val achievedRatio = numberOfEvenCyclesCreatedSoFar / (float) depth;
-            if (achievedRatio >= minRate) {
-                return depth;
-            }
-            return 0;
+    static List<int[]> searchForSortingSeqInParallel(
+            final byte[] pi,
+            final OneLinePermutation spi,
+            final int initialNumberOfEvenCycles,
+            final float minRate,
+            final int maxMoves,
+            final boolean fullSorting,
+            final int splitDepth,
+            final boolean deterministic,
+            final TranspositionTable table
+    ) {
+        val n = pi.length;
+        val weights = new long[splitDepth];
+        var weight = 1L;
+        for (int d = splitDepth - 1; d >= 0; d--) {
+            weights[d] = weight;
+            // a node has at most one child per triple of positions
+            weight = Math.multiplyExact(weight, (long) n * (n - 1) * (n - 2) / 6);
         }
 
-        if (depth == maxMoves) {
+        val winner = new Winner();
+        new SubtreeSearch(pi, spi.getOneLine(), new int[0], initialNumberOfEvenCycles, minRate, maxMoves, fullSorting,
+                splitDepth, weights, table, new Cancellation(winner, 0, deterministic)).invoke();
+
+        if (winner.moves == null) return Collections.emptyList();
+
+        val result = new ArrayList<int[]>(winner.depth);
+        for (int m = 0; m < winner.depth; m++) {
+            result.add(new int[]{winner.moves[m * 3], winner.moves[m * 3 + 1], winner.moves[m * 3 + 2]});
+        }
+        return result;
+    }
+
+    private static int searchForSortingSeq(
+            final byte[] pi,
+            final int[] movesFlat,
+            final int depth,
+            final int initialNumberOfEvenCycles,
+            final float minRate,
+            final int maxMoves,
+            final boolean fullSorting,
+            final TranspositionTable table,
+            final Cancellation cancellation,
+            final CycleState state
+    ) {
+        if (cancellation != null && cancellation.isCancelled()) {
             return 0;
         }
 
+        val numberOfEvenCycles = state.evenCycles;
         val numberOfEvenCyclesCreatedSoFar = numberOfEvenCycles - initialNumberOfEvenCycles;
-        val movesLeft = maxMoves - depth;
-        val maxPossibleEvenCycles = pi.length - numberOfEvenCycles;
 
-        if (numberOfEvenCyclesCreatedSoFar + movesLeft * 2 < Math.ceil(minRate * (depth + Math.ceil(maxPossibleEvenCycles / 2.0)))) {
+        if (isAccepted(pi.length, numberOfEvenCycles, numberOfEvenCyclesCreatedSoFar, depth, minRate, fullSorting)) {
+            return depth;
+        }
+
+        if (isPruned(pi.length, numberOfEvenCycles, numberOfEvenCyclesCreatedSoFar, depth, minRate, maxMoves, fullSorting)) {
             return 0;
         }
 
-        val lowerBound = (int) Math.ceil(maxPossibleEvenCycles / 2.0);
-        if (depth + lowerBound > maxMoves) {
+        val movesLeft = maxMoves - depth;
+        if (table != null && table.hasFailed(state.hash, depth, movesLeft)) {
             return 0;
         }
 
         val temp = state.temp;
+        // 2-moves are tried as soon as they are found, 0-moves are queued from the front and (-2)-moves from the back
+        val deferred = state.deferredMoves(depth);
+        var zeroMoves = 0;
+        var minusTwoMoves = deferred.length;
 
         for (var i = 0; i < pi.length - 2; i++) {
             val a = pi[i] & 0xFF;
@@ -80,29 +168,147 @@ public class SortingSearch {
                 for (var k = j + 1; k < pi.length; k++) {
                     val c = pi[k] & 0xFF;
 
-                    state.applyMove(a, b, c);
-
-                    val base = depth * 3;
-                    movesFlat[base] = a;
-                    movesFlat[base + 1] = b;
-                    movesFlat[base + 2] = c;
-
-                    applyInPlace(pi, i, j, k, temp);
-
-                    val result = searchForSortingSeq(pi, movesFlat, depth + 1, initialNumberOfEvenCycles, minRate, maxMoves, state);
-                    if (result > 0) {
-                        return result;
+                    val delta = state.delta(a, b, c);
+                    if (!isAccepted(pi.length, numberOfEvenCycles + delta, numberOfEvenCyclesCreatedSoFar + delta, depth + 1, minRate, fullSorting) &&
+                            isPruned(pi.length, numberOfEvenCycles + delta, numberOfEvenCyclesCreatedSoFar + delta, depth + 1, minRate, maxMoves, fullSorting)) {
+                        continue;
                     }
 
-                    undoInPlace(pi, i, j, k, temp);
-                    state.undoMove(a, b, c);
+                    if (delta == 2) {
+                        val result = tryMove(pi, movesFlat, depth, i, j, k, initialNumberOfEvenCycles, minRate, maxMoves, fullSorting, table, cancellation, state);
+                        if (result > 0 || cancellation != null && cancellation.isCancelled()) {
+                            return result;
+                        }
+                    } else if (delta == 0) {
+                        deferred[zeroMoves++] = i | (j << 8) | (k << 16);
+                    } else {
+                        deferred[--minusTwoMoves] = i | (j << 8) | (k << 16);
+                    }
                 }
             }
         }
 
+        for (int m = 0; m < zeroMoves; m++) {
+            val move = deferred[m];
+            val result = tryMove(pi, movesFlat, depth, move & 0xFF, (move >>> 8) & 0xFF, move >>> 16, initialNumberOfEvenCycles, minRate, maxMoves, fullSorting, table, cancellation, state);
+            if (result > 0 || cancellation != null && cancellation.isCancelled()) {
+                return result;
+            }
+        }
+
+        for (int m = deferred.length - 1; m >= minusTwoMoves; m--) {
+            val move = deferred[m];
+            val result = tryMove(pi, movesFlat, depth, move & 0xFF, (move >>> 8) & 0xFF, move >>> 16, initialNumberOfEvenCycles, minRate, maxMoves, fullSorting, table, cancellation, state);
+            if (result > 0 || cancellation != null && cancellation.isCancelled()) {
+                return result;
+            }
+        }
+
+        // a cancelled subtree was not fully explored (cancellation is never reverted, so checking it here suffices)
+        if (table != null && (cancellation == null || !cancellation.isCancelled())) {
+            table.recordFailure(state.hash, depth, movesLeft);
+        }
+
         return 0;
     }
 
+    /**
+     * Applies the transposition of the positions i, j and k of pi and searches from there. The move is undone unless a
+     * sequence is found.
+     */
+    private static int tryMove(
+            final byte[] pi,
+            final int[] movesFlat,
+            final int depth,
+            final int i,
+            final int j,
+            final int k,
+            final int initialNumberOfEvenCycles,
+            final float minRate,
+            final int maxMoves,
+            final boolean fullSorting,
+            final TranspositionTable table,
+            final Cancellation cancellation,
+            final CycleState state
+    ) {
+        val a = pi[i] & 0xFF;
+        val b = pi[j] & 0xFF;
+        val c = pi[k] & 0xFF;
+
+        state.applyMove(a, b, c);
+
+        val base = depth * 3;
+        movesFlat[base] = a;
+        movesFlat[base + 1] = b;
+        movesFlat[base + 2] = c;
+
+        applyInPlace(pi, i, j, k, state.temp);
+
+        val result = searchForSortingSeq(pi, movesFlat, depth + 1, initialNumberOfEvenCycles, minRate, maxMoves, fullSorting, table, cancellation, state);
+        if (result > 0) {
+            return result;
+        }
+
+        undoInPlace(pi, i, j, k, state.temp);
+        state.undoMove(a, b, c);
+        return 0;
+    }
+
+    static boolean isAccepted(
+            final int n,
+            final int numberOfEvenCycles,
+            final int numberOfEvenCyclesCreatedSoFar,
+            final int depth,
+            final float minRate,
+            final boolean fullSorting
+    ) {
+        if (fullSorting) {
+            return numberOfEvenCycles == n && numberOfEvenCyclesCreatedSoFar / (float) depth >= minRate;
+        }
+        return depth > 0 && numberOfEvenCyclesCreatedSoFar > 0 && numberOfEvenCyclesCreatedSoFar / (float) depth >= minRate;
+    }
+
+    /**
+     * @return true if no sequence extending the current one can be accepted
+     */
+    static boolean isPruned(
+            final int n,
+            final int numberOfEvenCycles,
+            final int numberOfEvenCyclesCreatedSoFar,
+            final int depth,
+            final float minRate,
+            final int maxMoves,
+            final boolean fullSorting
+    ) {
+        if (fullSorting && numberOfEvenCycles == n) {
+            return true;
+        }
+
+        if (depth == maxMoves) {
+            return true;
+        }
+
+        val movesLeft = maxMoves - depth;
+        val maxPossibleEvenCycles = n - numberOfEvenCycles;
+        val lowerBound = (int) Math.ceil(maxPossibleEvenCycles / 2.0);
+
+        if (fullSorting) {
+            if (numberOfEvenCyclesCreatedSoFar + movesLeft * 2 < Math.ceil(minRate * (depth + Math.ceil(maxPossibleEvenCycles / 2.0)))) {
+                return true;
+            }
+
+            return depth + lowerBound > maxMoves;
+        }
+
+        // the ratio only improves with longer sequences, so the best case is reached at maxMoves
+        if (numberOfEvenCyclesCreatedSoFar + movesLeft * 2 < (int) Math.floor(minRate * maxMoves)) {
+            return true;
+        }
+
+        val bestCaseDepth = depth + lowerBound;
+        return bestCaseDepth > 0 && (numberOfEvenCyclesCreatedSoFar + maxPossibleEvenCycles) / (float) bestCaseDepth < minRate;
+    }
+
     private static void applyInPlace(final byte[] pi, final int i, final int j, final int k, final byte[] temp) {
         val len = k - i;
         System.arraycopy(pi, i, temp, 0, len);
@@ -117,152 +323,154 @@ public class SortingSearch {
         System.arraycopy(temp, 0, pi, j, k - j);
     }
 
-    private static boolean isEvenCycle(final int cycleSize) {
-        return (cycleSize & 1) == 1;
+    /**
+     * Sequence found by a parallel search, kept from the first task in the sequential order to find one.
+     */
+    private static final class Winner {
+        private final AtomicLong index = new AtomicLong(Long.MAX_VALUE);
+        private int[] moves;
+        private int depth;
+
+        synchronized void offer(final long index, final int[] moves, final int depth) {
+            if (this.moves == null || index < this.index.get()) {
+                this.index.set(index);
+                this.moves = moves;
+                this.depth = depth;
+            }
+        }
     }
 
-    private static final class DynamicCycleState {
-        private final byte[] oneLine;
-        private final int[] cycleId;
-        private final int[] cycleSize;
-        int evenCycles;
-
-        private final int[] visitedStamp;
-        private int stamp;
-        private final int[] touched;
-        private int touchedSize;
-
-        private final int[] cycleStamp;
-        private int cycleStampVal;
-
-        private long[] undoStack;
-        private int undoTop;
-
-        final byte[] temp;
-
-        private DynamicCycleState(final OneLinePermutation spi) {
-            this.oneLine = spi.getOneLine();
-            this.cycleId = new int[oneLine.length];
-            this.cycleSize = new int[oneLine.length];
-            this.visitedStamp = new int[oneLine.length];
-            this.touched = new int[oneLine.length];
-            this.cycleStamp = new int[oneLine.length];
-            this.undoStack = new long[64];
-            this.temp = new byte[oneLine.length];
-            Arrays.fill(this.cycleId, -1);
-            buildInitialCycles();
+    /**
+     * Stop signal shared by the tasks of a parallel search. The index of a task is the position of its subtree in the
+     * sequential order, with one digit per split level. Task <code>index</code> is cancelled once any task (or, if
+     * deterministic, a task with a smaller index) has found a sequence.
+     */
+    private static final class Cancellation {
+        private final Winner winner;
+        private final long index;
+        private final boolean deterministic;
+
+        private Cancellation(final Winner winner, final long index, final boolean deterministic) {
+            this.winner = winner;
+            this.index = index;
+            this.deterministic = deterministic;
         }
 
-        private void buildInitialCycles() {
-            val visited = new boolean[oneLine.length];
-            for (int s = 0; s < oneLine.length; s++) {
-                if (visited[s]) continue;
-
-                val id = s;
-                var size = 0;
-                var cur = s;
-                do {
-                    visited[cur] = true;
-                    cycleId[cur] = id;
-                    size++;
-                    cur = oneLine[cur] & 0xFF;
-                } while (cur != s);
-
-                cycleSize[id] = size;
-                if (isEvenCycle(size)) evenCycles++;
-            }
+        boolean isCancelled() {
+            val found = winner.index.get();
+            return deterministic ? found < index : found != Long.MAX_VALUE;
         }
 
-        void applyMove(final int a, final int b, final int c) {
-            val av = oneLine[a];
-            val bv = oneLine[b];
-            val cv = oneLine[c];
-            val previousEvenCycles = evenCycles;
-
-            // push undo data
-            if (undoTop == undoStack.length) {
-                undoStack = Arrays.copyOf(undoStack, undoStack.length * 2);
-            }
-            undoStack[undoTop++] = (av & 0xFFL) | ((bv & 0xFFL) << 8) | ((cv & 0xFFL) << 16) | ((long) previousEvenCycles << 24);
-
-            val oldLocalEven = collectLocalEvenAndTouched(a, b, c);
-            oneLine[a] = cv;
-            oneLine[b] = av;
-            oneLine[c] = bv;
-            val newLocalEven = relabelTouchedAndCountEven();
-            evenCycles += (newLocalEven - oldLocalEven);
+        void found(final int[] movesFlat, final int depth) {
+            winner.offer(index, movesFlat, depth);
         }
 
-        void undoMove(final int a, final int b, final int c) {
-            val packed = undoStack[--undoTop];
-            val av = (byte) (packed & 0xFF);
-            val bv = (byte) ((packed >>> 8) & 0xFF);
-            val cv = (byte) ((packed >>> 16) & 0xFF);
-            val previousEvenCycles = (int) (packed >>> 24);
-
-            oneLine[a] = av;
-            oneLine[b] = bv;
-            oneLine[c] = cv;
+        Cancellation child(final long offset) {
+            return new Cancellation(winner, index + offset, deterministic);
+        }
+    }
 
-            collectLocalEvenAndTouched(a, b, c);
-            relabelTouchedAndCountEven();
-            evenCycles = previousEvenCycles;
+    /**
+     * Searches the subtree reached by the moves of <code>prefix</code> (as packed positions of pi). Above
+     * <code>splitDepth</code>, the children are forked as tasks of their own, in the order of the sequential search;
+     * the subtrees are thus only generated as their parents run, instead of upfront.
+     */
+    private static final class SubtreeSearch extends RecursiveAction {
+        private final byte[] pi;
+        private final byte[] oneLine;
+        private final int[] prefix;
+        private final int initialNumberOfEvenCycles;
+        private final float minRate;
+        private final int maxMoves;
+        private final boolean fullSorting;
+        private final int splitDepth;
+        private final long[] weights;
+        private final TranspositionTable table;
+        private final Cancellation cancellation;
+
+        private SubtreeSearch(
+                final byte[] pi,
+                final byte[] oneLine,
+                final int[] prefix,
+                final int initialNumberOfEvenCycles,
+                final float minRate,
+                final int maxMoves,
+                final boolean fullSorting,
+                final int splitDepth,
+                final long[] weights,
+                final TranspositionTable table,
+                final Cancellation cancellation
+        ) {
+            this.pi = pi;
+            this.oneLine = oneLine;
+            this.prefix = prefix;
+            this.initialNumberOfEvenCycles = initialNumberOfEvenCycles;
+            this.minRate = minRate;
+            this.maxMoves = maxMoves;
+            this.fullSorting = fullSorting;
+            this.splitDepth = splitDepth;
+            this.weights = weights;
+            this.table = table;
+            this.cancellation = cancellation;
         }
 
-        private int collectLocalEvenAndTouched(final int a, final int b, final int c) {
-            stamp++;
-            touchedSize = 0;
-            cycleStampVal++;
-            var localEven = 0;
-
-            touchedSize = collectComponent(a, touchedSize);
-            touchedSize = collectComponent(b, touchedSize);
-            touchedSize = collectComponent(c, touchedSize);
-
-            for (int i = 0; i < touchedSize; i++) {
-                val id = cycleId[touched[i]];
-                if (cycleStamp[id] != cycleStampVal) {
-                    cycleStamp[id] = cycleStampVal;
-                    if (isEvenCycle(cycleSize[id])) localEven++;
-                }
+        @Override
+        protected void compute() {
+            if (cancellation.isCancelled()) {
+                return;
             }
-            return localEven;
-        }
 
-        private int relabelTouchedAndCountEven() {
-            var localEven = 0;
+            val depth = prefix.length;
+            val pi = this.pi.clone();
+            val state = CycleState.of(new OneLinePermutation(oneLine.clone()));
+            val movesFlat = new int[(depth < splitDepth ? depth : maxMoves) * 3];
+            for (int m = 0; m < depth; m++) {
+                val i = prefix[m] & 0xFF;
+                val j = (prefix[m] >>> 8) & 0xFF;
+                val k = prefix[m] >>> 16;
+                movesFlat[m * 3] = pi[i] & 0xFF;
+                movesFlat[m * 3 + 1] = pi[j] & 0xFF;
+                movesFlat[m * 3 + 2] = pi[k] & 0xFF;
+                state.applyMove(pi[i] & 0xFF, pi[j] & 0xFF, pi[k] & 0xFF);
+                applyInPlace(pi, i, j, k, state.temp);
+            }
 
-            for (int i = 0; i < touchedSize; i++) {
-                cycleId[touched[i]] = -1;
+            if (depth == splitDepth) {
+                val found = searchForSortingSeq(pi, movesFlat, depth, initialNumberOfEvenCycles, minRate, maxMoves,
+                        fullSorting, table, cancellation, state);
+                if (found > 0) {
+                    cancellation.found(movesFlat, found);
+                }
+                return;
             }
 
-            for (int i = 0; i < touchedSize; i++) {
-                val s = touched[i];
-                if (cycleId[s] != -1) continue;
-
-                val id = s;
-                var size = 0;
-                var cur = s;
-                do {
-                    cycleId[cur] = id;
-                    size++;
-                    cur = oneLine[cur] & 0xFF;
-                } while (cur != s);
-
-                cycleSize[id] = size;
-                if (isEvenCycle(size)) localEven++;
+            val numberOfEvenCycles = state.evenCycles;
+            val numberOfEvenCyclesCreatedSoFar = numberOfEvenCycles - initialNumberOfEvenCycles;
+            if (isAccepted(pi.length, numberOfEvenCycles, numberOfEvenCyclesCreatedSoFar, depth, minRate, fullSorting)) {
+                cancellation.found(movesFlat, depth);
+                return;
+            }
+            if (isPruned(pi.length, numberOfEvenCycles, numberOfEvenCyclesCreatedSoFar, depth, minRate, maxMoves, fullSorting)) {
+                return;
             }
-            return localEven;
-        }
 
-        private int collectComponent(final int start, int touchedSize) {
-            var cur = start;
-            while (visitedStamp[cur] != stamp) {
-                visitedStamp[cur] = stamp;
-                touched[touchedSize++] = cur;
-                cur = oneLine[cur] & 0xFF;
+            val children = new ArrayList<SubtreeSearch>();
+            for (val wantedDelta : new int[]{2, 0, -2}) {
+                for (var i = 0; i < pi.length - 2; i++) {
+                    for (var j = i + 1; j < pi.length - 1; j++) {
+                        for (var k = j + 1; k < pi.length; k++) {
+                            if (state.delta(pi[i] & 0xFF, pi[j] & 0xFF, pi[k] & 0xFF) != wantedDelta) continue;
+
+                            val child = Arrays.copyOf(prefix, depth + 1);
+                            child[depth] = i | (j << 8) | (k << 16);
+                            children.add(new SubtreeSearch(this.pi, oneLine, child, initialNumberOfEvenCycles, minRate,
+                                    maxMoves, fullSorting, splitDepth, weights, table,
+                                    cancellation.child(children.size() * weights[depth])));
+                        }
+                    }
+                }
             }
-            return touchedSize;
+            ForkJoinTask.invokeAll(children);
         }
     }
 
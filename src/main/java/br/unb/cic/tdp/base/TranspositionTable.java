@@ -0,0 +1,141 @@
+package br.unb.cic.tdp.base;
+
+import lombok.val;
+
+import java.util.SplittableRandom;
+
+/**
+ * Fixed-size table of spi states known to have no sorting when reached at some depth with a number of remaining moves
+ * (the depth budget). Such a state has no sorting either when reached deeper with a smaller or equal budget, which
+ * lets the failures of a search be reused by a later search with a larger bound. States are identified by a Zobrist
+ * hash of their one-line notation, which the search keeps up to date incrementally. A hash collision can only hide a
+ * sorting, never produce a wrong one.
+ * <p>
+ * Entries are grouped in buckets of {@value #BUCKET_SIZE}. When a bucket is full, a new failure replaces the entry
+ * with the smallest budget, as long as the new budget is not smaller (deeper failures are the expensive ones). Each
+ * entry is stored as <code>key ^ data</code> and <code>data</code>, so that torn writes from concurrent searches
+ * sharing the same table are detected and ignored instead of producing false hits.
+ */
+final class TranspositionTable {
+
+    private static final int BUCKET_SIZE = 4;
+
+    /**
+     * Failures with smaller budgets are cheaper to recompute than to store.
+     */
+    private static final int MIN_BUDGET = 2;
+
+    private static final long[] ZOBRIST = new long[256 * 256];
+
+    static {
+        val random = new SplittableRandom(1375);
+        for (int i = 0; i < ZOBRIST.length; i++) {
+            ZOBRIST[i] = random.nextLong();
+        }
+    }
+
+    private final long[] entries;
+    private final int bucketMask;
+
+    /**
+     * Current generation. Entries of previous generations are treated as empty, which makes {@link #clear()} O(1).
+     * Each entry's data holds its generation, depth and budget as <code>generation << 16 | depth << 8 | budget</code>.
+     */
+    private long generation = 1;
+
+    TranspositionTable(final long bytesBudget) {
+        // each entry takes two longs; the table must hold at least one bucket and fit in a single array
+        val maxEntries = Long.highestOneBit(Integer.MAX_VALUE / 2);
+        val entriesCount = Long.highestOneBit(Math.max(Math.min(bytesBudget / 16, maxEntries), BUCKET_SIZE));
+        this.entries = new long[(int) entriesCount * 2];
+        this.bucketMask = (int) (entriesCount / BUCKET_SIZE) - 1;
+    }
+
+    static long zobrist(final int symbol, final int image) {
+        return ZOBRIST[(symbol << 8) | image];
+    }
+
+    static long hash(final byte[] oneLine) {
+        var hash = 0L;
+        for (int s = 0; s < oneLine.length; s++) {
+            hash ^= zobrist(s, oneLine[s] & 0xFF);
+        }
+        return hash;
+    }
+
+    void clear() {
+        generation++;
+    }
+
+    /**
+     * @return true if the state was recorded as failed at a depth up to <code>depth</code> with at least
+     * <code>budget</code> remaining moves
+     */
+    boolean hasFailed(final long key, final int depth, final int budget) {
+        val base = bucketOf(key);
+        for (int e = base; e < base + BUCKET_SIZE * 2; e += 2) {
+            val data = entries[e + 1];
+            if ((entries[e] ^ data) == key && generationOf(data) == generation && covers(data, depth, budget)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void recordFailure(final long key, final int depth, final int budget) {
+        if (budget < MIN_BUDGET) {
+            return;
+        }
+
+        val base = bucketOf(key);
+        var victim = base;
+        var victimBudget = Integer.MAX_VALUE;
+        for (int e = base; e < base + BUCKET_SIZE * 2; e += 2) {
+            val data = entries[e + 1];
+            if (generationOf(data) != generation) {
+                if (victimBudget >= 0) {
+                    victim = e;
+                    victimBudget = -1;
+                }
+            } else if ((entries[e] ^ data) == key) {
+                if (covers(data, depth, budget)) {
+                    return;
+                }
+                victim = e;
+                victimBudget = -1;
+                break;
+            } else if (budgetOf(data) < victimBudget) {
+                victim = e;
+                victimBudget = budgetOf(data);
+            }
+        }
+
+        if (victimBudget > budget) {
+            return;
+        }
+
+        val data = (generation << 16) | ((long) depth << 8) | budget;
+        entries[victim] = key ^ data;
+        entries[victim + 1] = data;
+    }
+
+    private int bucketOf(final long key) {
+        return (int) ((key ^ (key >>> 32)) & bucketMask) * BUCKET_SIZE * 2;
+    }
+
+    private static boolean covers(final long data, final int depth, final int budget) {
+        return depthOf(data) <= depth && budgetOf(data) >= budget;
+    }
+
+    private static long generationOf(final long data) {
+        return data >>> 16;
+    }
+
+    private static int depthOf(final long data) {
+        return (int) ((data >>> 8) & 0xFF);
+    }
+
+    private static int budgetOf(final long data) {
+        return (int) (data & 0xFF);
+    }
+}
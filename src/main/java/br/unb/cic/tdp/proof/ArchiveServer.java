@@ -0,0 +1,77 @@
+package br.unb.cic.tdp.proof;
+
+import com.sun.net.httpserver.HttpServer;
+import lombok.val;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Serves, on the loopback interface, a proof whose pages were archived by {@link ZipPageSink}: the files in the output
+ * directory, such as <code>index.html</code>, and then the pages in its archives, under the same paths they would
+ * have as files.
+ * <p>
+ * Usage: <code>ArchiveServer &lt;output_dir&gt; [&lt;port&gt;]</code>
+ */
+public class ArchiveServer {
+
+    public static final int DEFAULT_PORT = 8000;
+
+    public static void main(String[] args) throws IOException {
+        val root = Paths.get(args[0]).toAbsolutePath().normalize();
+        val port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+
+        // the first archive with a page has it, since archived pages are not written again
+        val archives = new HashMap<String, ZipFile>();
+        for (val archive : ZipPageSink.archives(root)) {
+            try {
+                val zip = new ZipFile(archive.toFile());
+                zip.stream().forEach(entry -> archives.putIfAbsent(entry.getName(), zip));
+            } catch (final ZipException e) {
+                // repaired by the next run of the proof generation
+                System.out.println("Skipping " + archive + ", which is being written or was cut short by a crash");
+            }
+        }
+
+        val server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                var name = exchange.getRequestURI().getPath().substring(1);
+                if (name.isEmpty()) {
+                    name = "index.html";
+                }
+
+                byte[] content = null;
+                val file = root.resolve(name).normalize();
+                if (file.startsWith(root) && Files.isRegularFile(file)) {
+                    content = Files.readAllBytes(file);
+                } else if (archives.containsKey(name)) {
+                    val zip = archives.get(name);
+                    try (val in = zip.getInputStream(zip.getEntry(name))) {
+                        content = in.readAllBytes();
+                    }
+                }
+
+                if (content == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Type", name.endsWith(".js")
+                        ? "text/javascript; charset=utf-8" : "text/html; charset=utf-8");
+                exchange.sendResponseHeaders(200, content.length);
+                exchange.getResponseBody().write(content);
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+        server.start();
+
+        System.out.println("Serving " + archives.size() + " archived pages of " + root + " at http://localhost:" + port + "/");
+    }
+}
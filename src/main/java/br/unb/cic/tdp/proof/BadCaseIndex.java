@@ -0,0 +1,75 @@
+package br.unb.cic.tdp.proof;
+
+import br.unb.cic.tdp.base.Configuration;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import lombok.val;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+
+/**
+ * Index of the bad cases found by a search phase, built once from the outcomes of its {@link ResultStore} so that the
+ * navigation pages do not have to check a file for each extension they render. Bad cases are identified by a 64-bit
+ * fingerprint of their canonical signature, computed straight from the signatures stored. A Bloom filter answers most
+ * queries, which are not bad cases, and the rest are confirmed by a binary search on the sorted fingerprints.
+ */
+public final class BadCaseIndex {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final BloomFilter<Long> filter;
+    private final long[] fingerprints;
+
+    private BadCaseIndex(final BloomFilter<Long> filter, final long[] fingerprints) {
+        this.filter = filter;
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * @return the index of the bad cases stored for <code>outputDir</code>
+     */
+    public static BadCaseIndex load(final String outputDir) {
+        return of(consumer -> SortOrExtend.forEachBadCase(outputDir, consumer));
+    }
+
+    /**
+     * @param badCases passes the canonical signature of each bad case, possibly more than once, to its consumer
+     */
+    static BadCaseIndex of(final Consumer<Consumer<short[]>> badCases) {
+        val found = LongStream.builder();
+        badCases.accept(signature -> found.add(fingerprint(signature)));
+        val fingerprints = found.build().sorted().distinct().toArray();
+
+        val filter = BloomFilter.create(Funnels.longFunnel(), Math.max(fingerprints.length, 1), FALSE_POSITIVE_RATE);
+        for (val fingerprint : fingerprints) {
+            filter.put(fingerprint);
+        }
+        return new BadCaseIndex(filter, fingerprints);
+    }
+
+    /**
+     * @return true if the canonical configuration is a bad case
+     */
+    public boolean contains(final Configuration canonical) {
+        return indexOf(canonical.getSignature().getContent()) >= 0;
+    }
+
+    /**
+     * @return the position of the bad case with the given canonical signature among the {@link #size} indexed, or
+     * a negative number if it is not a bad case
+     */
+    public int indexOf(final short[] canonicalSignature) {
+        val fingerprint = fingerprint(canonicalSignature);
+        return filter.mightContain(fingerprint) ? Arrays.binarySearch(fingerprints, fingerprint) : -1;
+    }
+
+    public int size() {
+        return fingerprints.length;
+    }
+
+    private static long fingerprint(final short[] canonicalSignature) {
+        return VisitedSet.fingerprint(canonicalSignature, 0);
+    }
+}
@@ -0,0 +1,264 @@
+package br.unb.cic.tdp.proof;
+
+import br.unb.cic.tdp.base.SortingBackend;
+import br.unb.cic.tdp.permutation.Cycle;
+import br.unb.cic.tdp.permutation.MulticyclePermutation;
+import lombok.SneakyThrows;
+import lombok.val;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Chooses the bounds of the staged searches of {@link SortOrExtend}. For each class of configurations (same 3-norm and
+ * same multiset of cycle lengths), it records whether each bound searched found a sorting and the mean time of the
+ * bounds that did not. Once a class has enough history, its schedule is the one minimizing the expected search time:
+ * a bound b followed by b' costs <code>C(b')</code> times the probability of having no sorting within b moves. The
+ * last bound is always kept, so the planner never makes a search give up earlier.
+ * <p>
+ * A sorting found within b moves is also found within any larger bound, and a bound without sorting has none below
+ * it either, so a search tells the outcome of the bounds it did not try as well, except for those between its last
+ * failure and its success. Since a skipped bound is thus only learned from the searches failing above it, one search
+ * out of {@link #EXPLORE_EVERY} of a class still uses the default schedule.
+ * <p>
+ * The statistics are kept in a tab-separated file in the output directory, so that the following runs start tuned.
+ */
+public class DepthSchedulePlanner {
+
+    public static final String FILE_NAME = "depth-schedule.tsv";
+
+    /**
+     * Configurations to be searched in a class before its schedule is planned.
+     */
+    static final int MIN_SAMPLES = 32;
+
+    /**
+     * Period of the searches of a class using the default schedule instead of the planned one.
+     */
+    static final int EXPLORE_EVERY = 16;
+
+    private static final int MAX_BOUND = 64;
+    private static final int SAVE_EVERY = 1000;
+
+    private final Path file;
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final AtomicInteger unsaved = new AtomicInteger();
+
+    private DepthSchedulePlanner(final Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @param file where the statistics are read from, if it exists, and saved to
+     */
+    @SneakyThrows
+    public static DepthSchedulePlanner load(final Path file) {
+        val planner = new DepthSchedulePlanner(file);
+        if (Files.exists(file)) {
+            try (val lines = Files.lines(file)) {
+                lines.filter(line -> !line.isEmpty()).forEach(line -> {
+                    val fields = line.split("\t");
+                    val stats = planner.statsOf(fields[0]);
+                    switch (fields[1]) {
+                        case "searches" -> stats.searches = Long.parseLong(fields[2]);
+                        case "outcome" -> {
+                            val bound = Integer.parseInt(fields[2]);
+                            stats.known[bound] = Long.parseLong(fields[3]);
+                            stats.sorted[bound] = Long.parseLong(fields[4]);
+                        }
+                        case "stage" -> {
+                            val bound = Integer.parseInt(fields[2]);
+                            stats.failures[bound] = Long.parseLong(fields[3]);
+                            stats.nanos[bound] = Long.parseLong(fields[4]);
+                        }
+                        default -> throw new IllegalStateException("Invalid line: " + line);
+                    }
+                });
+            }
+        }
+        return planner;
+    }
+
+    /**
+     * The class of a configuration: its 3-norm followed by the number of cycles of each length.
+     */
+    public static String classOf(final MulticyclePermutation spi) {
+        val lengths = new TreeMap<Integer, Integer>();
+        for (final Cycle cycle : spi) {
+            lengths.merge(cycle.size(), 1, Integer::sum);
+        }
+        return spi.get3Norm() + " " + lengths.entrySet().stream()
+                .map(e -> e.getKey() + ":" + e.getValue())
+                .collect(Collectors.joining(" "));
+    }
+
+    /**
+     * @param defaultBounds the schedule used while the class has not enough history; its last bound is kept
+     * @return the increasing bounds to search
+     */
+    public int[] schedule(final String configurationClass, final int[] defaultBounds) {
+        val stats = this.stats.get(configurationClass);
+        val lastBound = defaultBounds[defaultBounds.length - 1];
+        if (stats == null || lastBound >= MAX_BOUND) {
+            return defaultBounds;
+        }
+
+        synchronized (stats) {
+            if (stats.searches < MIN_SAMPLES || stats.failures[lastBound] == 0 || ++stats.scheduled % EXPLORE_EVERY == 0) {
+                return defaultBounds;
+            }
+
+            // the bounds whose cost is known
+            val candidates = new ArrayList<Integer>();
+            for (int bound = 1; bound <= lastBound; bound++) {
+                if (stats.failures[bound] > 0) candidates.add(bound);
+            }
+
+            // expectedCost[c]: expected time of the rest of the schedule once candidate c failed
+            val m = candidates.size();
+            val expectedCost = new double[m];
+            val next = new int[m];
+            expectedCost[m - 1] = 0;
+            for (int c = m - 2; c >= 0; c--) {
+                val failure = 1 - stats.successProbability(candidates.get(c));
+                expectedCost[c] = Double.MAX_VALUE;
+                for (int n = c + 1; n < m; n++) {
+                    val cost = failure * stats.meanNanos(candidates.get(n)) + expectedCost[n];
+                    if (cost < expectedCost[c]) {
+                        expectedCost[c] = cost;
+                        next[c] = n;
+                    }
+                }
+            }
+
+            var first = m - 1;
+            var best = stats.meanNanos(lastBound);
+            for (int c = 0; c < m - 1; c++) {
+                val cost = stats.meanNanos(candidates.get(c)) + expectedCost[c];
+                if (cost < best) {
+                    best = cost;
+                    first = c;
+                }
+            }
+
+            val schedule = new ArrayList<Integer>();
+            for (int c = first; ; c = next[c]) {
+                schedule.add(candidates.get(c));
+                if (c == m - 1) break;
+            }
+            return schedule.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * @return a listener recording the bounds searched for a configuration of the given class, to be used for a single
+     * search
+     */
+    public SortingBackend.StageListener listener(final String configurationClass) {
+        val stats = statsOf(configurationClass);
+        return new SortingBackend.StageListener() {
+            // bounds up to this one are known to have no sorting
+            private int failedUpTo;
+
+            @Override
+            public void stageCompleted(final int maxMoves, final boolean found, final long nanos) {
+                if (maxMoves >= MAX_BOUND) return;
+                synchronized (stats) {
+                    if (found) {
+                        for (int bound = maxMoves; bound < MAX_BOUND; bound++) {
+                            stats.known[bound]++;
+                            stats.sorted[bound]++;
+                        }
+                    } else {
+                        for (int bound = failedUpTo + 1; bound <= maxMoves; bound++) {
+                            stats.known[bound]++;
+                        }
+                        failedUpTo = Math.max(failedUpTo, maxMoves);
+                        // a successful stage stops early, so only the failed ones tell what a bound costs
+                        stats.failures[maxMoves]++;
+                        stats.nanos[maxMoves] += nanos;
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Records that a configuration of the given class was searched.
+     */
+    public void recordOutcome(final String configurationClass) {
+        val stats = statsOf(configurationClass);
+        synchronized (stats) {
+            stats.searches++;
+        }
+
+        if (unsaved.incrementAndGet() % SAVE_EVERY == 0) {
+            save();
+        }
+    }
+
+    @SneakyThrows
+    public synchronized void save() {
+        val lines = new ArrayList<String>();
+        for (val entry : new TreeMap<>(stats).entrySet()) {
+            val key = entry.getKey();
+            val stats = entry.getValue();
+            synchronized (stats) {
+                lines.add(key + "\tsearches\t" + stats.searches);
+                for (int bound = 1; bound < MAX_BOUND; bound++) {
+                    if (stats.known[bound] > 0) {
+                        lines.add(key + "\toutcome\t" + bound + "\t" + stats.known[bound] + "\t" + stats.sorted[bound]);
+                    }
+                }
+                for (int bound = 1; bound < MAX_BOUND; bound++) {
+                    if (stats.failures[bound] > 0) {
+                        lines.add(key + "\tstage\t" + bound + "\t" + stats.failures[bound] + "\t" + stats.nanos[bound]);
+                    }
+                }
+            }
+        }
+
+        val temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, lines);
+        Files.move(temp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    private Stats statsOf(final String configurationClass) {
+        return stats.computeIfAbsent(configurationClass, k -> new Stats());
+    }
+
+    private static final class Stats {
+        private long searches;
+        private long scheduled;
+        /**
+         * Number of searches whose outcome within each bound is known, and of those sorted within it.
+         */
+        private final long[] known = new long[MAX_BOUND];
+        private final long[] sorted = new long[MAX_BOUND];
+        /**
+         * Number of stages finding no sorting and their total time by bound.
+         */
+        private final long[] failures = new long[MAX_BOUND];
+        private final long[] nanos = new long[MAX_BOUND];
+
+        /**
+         * @return the fraction of the configurations sorted within <code>bound</code> moves
+         */
+        private double successProbability(final int bound) {
+            return known[bound] == 0 ? 0 : sorted[bound] / (double) known[bound];
+        }
+
+        private double meanNanos(final int bound) {
+            return nanos[bound] / (double) failures[bound];
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package br.unb.cic.tdp.proof;
+
+import lombok.SneakyThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes each page to its own file.
+ */
+public final class DirectoryPageSink implements PageSink {
+
+    @Override
+    public boolean exists(final Path page) {
+        return Files.exists(page);
+    }
+
+    @SneakyThrows
+    @Override
+    public void write(final Path page, final String content) {
+        Files.writeString(page, content);
+    }
+
+    @Override
+    public void close() {
+    }
+}
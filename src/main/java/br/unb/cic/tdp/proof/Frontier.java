@@ -0,0 +1,196 @@
+package br.unb.cic.tdp.proof;
+
+import br.unb.cic.tdp.base.Configuration;
+import lombok.val;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Schedules the configurations to be sorted or extended in a proof phase as tasks of a fork/join pool. At most
+ * <code>maxInFlight</code> tasks are forked and not yet completed. Beyond that, a configuration is queued in a
+ * {@link SpillQueue} until tasks complete, so that the queues of the pool stay bounded however wide the tree is.
+ * <p>
+ * If the frontier has a {@link FrontierJournal}, the configurations entering and leaving it are logged, and committed
+ * by a checkpoint every {@value #CHECKPOINT_BYTES} bytes of records, so that an interrupted run can {@link #resume}
+ * from them.
+ */
+public class Frontier {
+
+    /**
+     * Bytes of journal records buffered before a checkpoint.
+     */
+    static final int CHECKPOINT_BYTES = 4 * 1024 * 1024;
+
+    private final ForkJoinPool pool;
+    private final Semaphore inFlight;
+    private final Function<Configuration, SortOrExtend> tasks;
+    private final FrontierJournal journal;
+    private final Runnable checkpoint;
+    private final ReentrantLock checkpointing = new ReentrantLock();
+    volatile SpillQueue overflow;
+
+    /**
+     * @param tasks      creates the task sorting or extending a configuration
+     * @param overflow   queue of the configurations beyond <code>maxInFlight</code>; subclasses not using
+     *                   {@link #submit} may set it later
+     * @param journal    journal of the configurations entering and leaving the frontier, or null
+     * @param checkpoint writes the pages and results of the configurations that left, before their journal records
+     */
+    Frontier(final ForkJoinPool pool, final int maxInFlight, final Function<Configuration, SortOrExtend> tasks,
+             final SpillQueue overflow, final FrontierJournal journal, final Runnable checkpoint) {
+        this.pool = pool;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.tasks = tasks;
+        this.overflow = overflow;
+        this.journal = journal;
+        this.checkpoint = checkpoint;
+    }
+
+    public void submit(final Configuration configuration) {
+        entered(configuration);
+        if (inFlight.tryAcquire()) {
+            fork(configuration);
+        } else {
+            overflow.push(configuration.getSignature().getContent());
+            refill();
+        }
+    }
+
+    /**
+     * Submits the configurations left pending by an interrupted run.
+     *
+     * @return whether the journal was kept by a previous run, in which case the roots are not to be submitted again
+     */
+    public boolean resume() {
+        if (journal == null || !journal.resumed()) {
+            return false;
+        }
+
+        val pending = journal.pending();
+        System.out.println("Resuming from " + pending.size() + " pending configurations");
+        for (val signature : pending) {
+            submit(Configuration.ofSignature(signature));
+        }
+        return true;
+    }
+
+    /**
+     * Waits until every configuration submitted, including the spilled ones, has been sorted or extended.
+     */
+    public void await() {
+        drain();
+        checkpoint();
+        close();
+
+        if (overflow != null && overflow.spilled() > 0) {
+            System.out.println("Spilled " + overflow.spilled() + " configurations to disk");
+        }
+    }
+
+    /**
+     * Waits until the pool is quiescent and the queued configurations are all scheduled.
+     */
+    void drain() {
+        do {
+            pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            refill();
+        } while (!pool.isQuiescent() || (overflow != null && !overflow.isEmpty()));
+    }
+
+    /**
+     * Runs the checkpoint, then commits the journal records buffered before it.
+     */
+    void checkpoint() {
+        checkpointing.lock();
+        try {
+            val records = journal == null ? null : journal.take();
+            if (checkpoint != null) {
+                checkpoint.run();
+            }
+            if (records != null) {
+                journal.append(records);
+            }
+        } finally {
+            checkpointing.unlock();
+        }
+    }
+
+    void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Logs a configuration entering the frontier.
+     */
+    void entered(final Configuration configuration) {
+        if (journal != null) {
+            journal.entered(configuration.getSignature().getContent());
+        }
+    }
+
+    /**
+     * @param done whether the task sorted or extended its configuration, rather than failing
+     */
+    void completed(final SortOrExtend task, final boolean done) {
+        if (done && journal != null) {
+            journal.left(task.configuration.getSignature().getContent());
+        }
+        if (task.inFlight) {
+            inFlight.release();
+        }
+        refill();
+
+        // a single worker checkpoints at a time, the others go on
+        if (journal != null && journal.buffered() >= CHECKPOINT_BYTES && checkpointing.tryLock()) {
+            try {
+                checkpoint();
+            } finally {
+                checkpointing.unlock();
+            }
+        }
+    }
+
+    /**
+     * Schedules queued configurations while there is room for them.
+     */
+    void refill() {
+        val overflow = this.overflow;
+        if (overflow == null) {
+            return;
+        }
+
+        while (inFlight.tryAcquire()) {
+            val signature = overflow.poll();
+            if (signature == null) {
+                inFlight.release();
+                return;
+            }
+            fork(configurationOf(signature));
+        }
+    }
+
+    /**
+     * @return the configuration of a record taken from the overflow queue
+     */
+    Configuration configurationOf(final short[] record) {
+        return Configuration.ofSignature(record);
+    }
+
+    private void fork(final Configuration configuration) {
+        val task = tasks.apply(configuration);
+        task.frontier = this;
+        task.inFlight = true;
+        if (ForkJoinTask.getPool() == pool) {
+            task.fork();
+        } else {
+            pool.execute(task);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package br.unb.cic.tdp.proof;
+
+import lombok.SneakyThrows;
+import lombok.val;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Journal of the configurations entering and leaving a {@link Frontier}, kept in the output directory so that an
+ * interrupted run resumes from the configurations it left pending instead of walking the tree again from its roots.
+ * The records have the format of the {@link SpillQueue} segments, the number of values followed by the values of the
+ * signature, with the number negated for a configuration leaving. A configuration leaves once it is sorted or its
+ * extensions have entered, so every prefix of the journal holds the extensions of the configurations that left in it.
+ * <p>
+ * The records are buffered in memory until {@link #take} and {@link #append}, between which the frontier waits for
+ * the pages and the results of the configurations that left to be on disk: a configuration found as left by a
+ * restarted run is never searched again. Opening a journal replays it, ignoring a record cut short by a crash, and
+ * rewrites it with the pending configurations only. So that the journal grows with the frontier rather than with the
+ * tree, it is compacted the same way by {@link #append} once it has doubled since its last compaction and holds more
+ * than {@value #COMPACT_BYTES} bytes by default.
+ */
+final class FrontierJournal implements Closeable {
+
+    static final String FILE_NAME = "journal.bin";
+
+    /**
+     * Bytes below which the journal is not compacted during a run.
+     */
+    static final long COMPACT_BYTES = 64L * 1024 * 1024;
+
+    private final Path dir;
+    private final long compactBytes;
+    private final boolean resumed;
+    private final List<short[]> pending;
+    private final Object appending = new Object();
+
+    private FileChannel channel;
+    private long compactedBytes;
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private DataOutputStream records = new DataOutputStream(buffer);
+
+    private FrontierJournal(final Path dir, final long compactBytes, final boolean resumed,
+                            final List<short[]> pending) {
+        this.dir = dir;
+        this.compactBytes = compactBytes;
+        this.resumed = resumed;
+        this.pending = pending;
+    }
+
+    /**
+     * Opens the journal kept in <code>dir</code>, creating it if needed.
+     */
+    static FrontierJournal open(final Path dir) {
+        return open(dir, COMPACT_BYTES);
+    }
+
+    /**
+     * @param compactBytes bytes below which the journal is not compacted during the run
+     */
+    @SneakyThrows
+    static FrontierJournal open(final Path dir, final long compactBytes) {
+        Files.createDirectories(dir);
+        val file = dir.resolve(FILE_NAME);
+        val resumed = Files.exists(file);
+        val pending = resumed ? replay(file) : List.<short[]>of();
+
+        val journal = new FrontierJournal(dir, compactBytes, resumed, pending);
+        journal.rewrite(pending);
+        return journal;
+    }
+
+    /**
+     * @return whether the journal was kept by a previous run
+     */
+    boolean resumed() {
+        return resumed;
+    }
+
+    /**
+     * @return the signatures of the configurations left pending by the previous run, in the order they entered
+     */
+    List<short[]> pending() {
+        return pending;
+    }
+
+    @SneakyThrows
+    synchronized void entered(final short[] signature) {
+        write(records, signature, signature.length);
+    }
+
+    @SneakyThrows
+    synchronized void left(final short[] signature) {
+        write(records, signature, -signature.length);
+    }
+
+    /**
+     * @return the number of bytes buffered since the last {@link #take}
+     */
+    synchronized int buffered() {
+        return buffer.size();
+    }
+
+    /**
+     * @return the records buffered so far, to be passed to {@link #append} once their configurations are on disk
+     */
+    synchronized byte[] take() {
+        val taken = buffer.toByteArray();
+        buffer = new ByteArrayOutputStream();
+        records = new DataOutputStream(buffer);
+        return taken;
+    }
+
+    /**
+     * Appends records taken from the journal and forces them to the disk, compacting the journal if it has grown
+     * enough. Records must be appended in the order they were taken.
+     */
+    @SneakyThrows
+    void append(final byte[] taken) {
+        synchronized (appending) {
+            val bytes = ByteBuffer.wrap(taken);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+
+            val size = channel.size();
+            if (size > compactBytes && size > 2 * compactedBytes) {
+                channel.close();
+                rewrite(replay(dir.resolve(FILE_NAME)));
+            }
+        }
+    }
+
+    /**
+     * @return the size of the journal on disk
+     */
+    @SneakyThrows
+    long size() {
+        synchronized (appending) {
+            return channel.size();
+        }
+    }
+
+    @SneakyThrows
+    @Override
+    public void close() {
+        synchronized (appending) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Replaces the journal by one holding the entries of <code>pending</code>, and opens it for appending.
+     */
+    @SneakyThrows
+    private void rewrite(final List<short[]> pending) {
+        val temp = dir.resolve(FILE_NAME + ".tmp");
+        try (val writer = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            for (val signature : pending) {
+                write(writer, signature, signature.length);
+            }
+        }
+        try (val written = FileChannel.open(temp, WRITE)) {
+            written.force(false);
+        }
+        val file = dir.resolve(FILE_NAME);
+        Files.move(temp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+
+        channel = FileChannel.open(file, WRITE, APPEND);
+        compactedBytes = channel.size();
+    }
+
+    private static void write(final DataOutputStream writer, final short[] signature, final int length)
+            throws IOException {
+        writer.writeShort(length);
+        for (val value : signature) {
+            writer.writeShort(value);
+        }
+    }
+
+    /**
+     * Reads the journal record by record, holding only the configurations pending so far.
+     *
+     * @return the signatures that entered and did not leave
+     */
+    @SneakyThrows
+    private static List<short[]> replay(final Path file) {
+        val pending = new LinkedHashMap<ShortBuffer, short[]>();
+        try (val reader = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            while (true) {
+                val length = reader.readShort();
+                val signature = new short[Math.abs(length)];
+                for (int i = 0; i < signature.length; i++) {
+                    signature[i] = reader.readShort();
+                }
+                if (length > 0) {
+                    pending.putIfAbsent(ShortBuffer.wrap(signature), signature);
+                } else {
+                    pending.remove(ShortBuffer.wrap(signature));
+                }
+            }
+        } catch (final EOFException e) {
+            // the end of the journal, or of a last record cut short by a crash
+        }
+        return new ArrayList<>(pending.values());
+    }
+}
@@ -0,0 +1,162 @@
+package br.unb.cic.tdp.proof;
+
+import br.unb.cic.tdp.base.Configuration;
+import lombok.SneakyThrows;
+import lombok.val;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Frontier exploring the configurations level by level, in increasing 3-norm. The configurations submitted are
+ * queued in the level of their 3-norm, and a level is only scheduled once the previous ones are fully explored. Since
+ * the extensions of a configuration have a larger 3-norm than it, a level is complete before any of its
+ * configurations is searched, and those whose canonical form is already queued are dropped: each canonical
+ * configuration is searched and extended once, instead of being reached by several workers at once. The canonical
+ * signature computed to find the duplicates is queued along with the signature, so that the task does not compute it
+ * again.
+ * <p>
+ * Once a level is explored, its pages are written, its results synced and its journal committed, so that a restarted
+ * run does not search it again.
+ */
+final class LevelFrontier extends Frontier {
+
+    private static final class Level {
+        final int threeNorm;
+        final SpillQueue queue;
+        final LongAdder submitted = new LongAdder();
+        final LongAdder duplicates = new LongAdder();
+
+        Level(final int threeNorm, final SpillQueue queue) {
+            this.threeNorm = threeNorm;
+            this.queue = queue;
+        }
+    }
+
+    private final Path dir;
+    private final int hotCapacity;
+    private final VisitedSet queued;
+
+    private final TreeMap<Integer, Level> levels = new TreeMap<>();
+    private Level current;
+
+    /**
+     * @param dir            directory of the segments spilled by the queues of the levels
+     * @param queuedSetBytes memory budget of the set of the canonical configurations queued
+     * @param checkpoint     run once each level is explored, before its journal records are committed
+     */
+    LevelFrontier(final ForkJoinPool pool, final int maxInFlight, final Function<Configuration, SortOrExtend> tasks,
+                  final Path dir, final long queuedSetBytes, final FrontierJournal journal, final Runnable checkpoint) {
+        super(pool, maxInFlight, tasks, null, journal, checkpoint);
+        this.dir = dir;
+        this.hotCapacity = maxInFlight;
+        this.queued = new VisitedSet(queuedSetBytes);
+        clear(dir);
+    }
+
+    @Override
+    public void submit(final Configuration configuration) {
+        val level = levelOf(configuration.getSpi().get3Norm());
+        level.submitted.increment();
+        // the canonical forms of different levels differ, so a single set serves all of them; the outcome is unused
+        val canonical = configuration.getCanonical().getSignature().getContent();
+        if (!queued.add(canonical, VisitedSet.Outcome.BAD)) {
+            level.duplicates.increment();
+            return;
+        }
+
+        entered(configuration);
+        // the signature followed by the canonical signature
+        val signature = configuration.getSignature().getContent();
+        val record = Arrays.copyOf(signature, signature.length * 2);
+        System.arraycopy(canonical, 0, record, signature.length, canonical.length);
+        level.queue.push(record);
+        if (level.queue == overflow) {
+            refill();
+        }
+    }
+
+    /**
+     * Explores the levels in increasing 3-norm, reporting the duplicates removed from each.
+     */
+    @Override
+    public void await() {
+        long submitted = 0, duplicates = 0, spilled = 0;
+        while (true) {
+            final Level level;
+            synchronized (levels) {
+                val next = levels.pollFirstEntry();
+                if (next == null) {
+                    break;
+                }
+                current = level = next.getValue();
+                overflow = level.queue;
+            }
+
+            refill();
+            drain();
+            checkpoint();
+
+            submitted += level.submitted.sum();
+            duplicates += level.duplicates.sum();
+            spilled += level.queue.spilled();
+            System.out.printf("3-norm %d: %d configurations, %d duplicates removed (%.1f%%)%n", level.threeNorm,
+                    level.submitted.sum(), level.duplicates.sum(), percentage(level.duplicates.sum(), level.submitted.sum()));
+        }
+
+        synchronized (levels) {
+            current = null;
+            overflow = null;
+        }
+        close();
+        System.out.printf("%d duplicates removed of %d configurations (%.1f%%)%n", duplicates, submitted,
+                percentage(duplicates, submitted));
+        if (spilled > 0) {
+            System.out.println("Spilled " + spilled + " configurations to disk");
+        }
+    }
+
+    @Override
+    Configuration configurationOf(final short[] record) {
+        val n = record.length / 2;
+        return Configuration.ofSignature(Arrays.copyOf(record, n), Arrays.copyOfRange(record, n, record.length));
+    }
+
+    /**
+     * @return the level of the given 3-norm, or the level being explored if the 3-norm is not above its own
+     */
+    private Level levelOf(final int threeNorm) {
+        synchronized (levels) {
+            if (current != null && threeNorm <= current.threeNorm) {
+                return current;
+            }
+            return levels.computeIfAbsent(threeNorm, norm ->
+                    new Level(norm, new SpillQueue(dir.resolve(String.format("level-%02d", norm)), hotCapacity)));
+        }
+    }
+
+    /**
+     * Deletes the queues of the levels left in <code>dir</code> by an interrupted run.
+     */
+    @SneakyThrows
+    private static void clear(final Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (val levels = Files.newDirectoryStream(dir, "level-*")) {
+            for (val level : levels) {
+                SpillQueue.clear(level);
+                Files.delete(level);
+            }
+        }
+    }
+
+    private static double percentage(final long part, final long total) {
+        return total == 0 ? 0 : 100.0 * part / total;
+    }
+}
@@ -0,0 +1,27 @@
+package br.unb.cic.tdp.proof;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+
+/**
+ * Destination of the pages of a proof, given by their paths under the output directory.
+ */
+public interface PageSink extends Closeable {
+
+    boolean exists(Path page);
+
+    /**
+     * Writes a page, unless the sink already has it and cannot replace it.
+     */
+    void write(Path page, String content);
+
+    /**
+     * @return whether the pages written survive a crash of the run
+     */
+    default boolean writesThrough() {
+        return true;
+    }
+
+    @Override
+    void close();
+}
@@ -1,5 +1,9 @@
 package br.unb.cic.tdp.proof;
 
+import br.unb.cic.tdp.base.CPUSortingSearch;
+import br.unb.cic.tdp.base.CanonicalCache;
+import br.unb.cic.tdp.base.GPUSortingSearch;
+import br.unb.cic.tdp.base.SortingBackend;
 import br.unb.cic.tdp.proof.seq11_8.Combinations;
 import br.unb.cic.tdp.proof.seq11_8.Extensions;
 import lombok.val;
@@ -7,26 +11,98 @@ import org.apache.velocity.app.Velocity;
 
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
 
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 public class ProofGenerator {
 
+    /**
+     * Maximum number of canonical signatures kept by the {@link CanonicalCache}, unless set with
+     * {@link #CANONICAL_CACHE_SIZE}.
+     */
+    public static final long DEFAULT_CANONICAL_CACHE_SIZE = 1 << 20;
+
+    /**
+     * Memory budget of the set of the configurations visited during the run.
+     */
+    public static final long VISITED_SET_BYTES = 256L * 1024 * 1024;
+
+    /**
+     * Writer threads and queued pages of the {@link RenderPipeline}.
+     */
+    public static final int RENDER_THREADS = 2;
+    public static final int RENDER_QUEUE_SIZE = 1024;
+
+    /**
+     * Maximum number of configurations queued in the fork/join pools of the proof phases.
+     */
+    public static final int MAX_IN_FLIGHT = 1 << 16;
+
+    /**
+     * Option deferring the rendering of the sorting pages until the end of each search phase.
+     */
+    public static final String DEFER_RENDERING = "--defer-rendering";
+
+    /**
+     * Option streaming the pages into zip archives instead of writing a file per page.
+     */
+    public static final String ARCHIVE = "--archive";
+
+    /**
+     * Option exploring the configurations level by level, in increasing 3-norm.
+     */
+    public static final String BY_LEVEL = "--by-level";
+
+    /**
+     * Option setting the maximum number of canonical signatures cached, as in
+     * <code>--canonical-cache-size=4194304</code>.
+     */
+    public static final String CANONICAL_CACHE_SIZE = "--canonical-cache-size=";
+
     public static void main(String[] args) throws Throwable {
+        val deferRendering = Arrays.asList(args).contains(DEFER_RENDERING);
+        val archive = Arrays.asList(args).contains(ARCHIVE);
+        val byLevel = Arrays.asList(args).contains(BY_LEVEL);
+        val canonicalCacheSize = Arrays.stream(args).filter(arg -> arg.startsWith(CANONICAL_CACHE_SIZE))
+                .map(arg -> Long.parseLong(arg.substring(CANONICAL_CACHE_SIZE.length())))
+                .reduce((first, second) -> second).orElse(DEFAULT_CANONICAL_CACHE_SIZE);
+        args = Arrays.stream(args).filter(arg -> !arg.equals(DEFER_RENDERING) && !arg.equals(ARCHIVE) && !arg.equals(BY_LEVEL)
+                        && !arg.startsWith(CANONICAL_CACHE_SIZE))
+                .toArray(String[]::new);
+
         Velocity.setProperty("resource.loader", "class");
-        Velocity.setProperty("parser.pool.size", Runtime.getRuntime().availableProcessors());
+        // the navigation pages are rendered by the workers, the sorting pages by the render pipeline
+        Velocity.setProperty("parser.pool.size", Runtime.getRuntime().availableProcessors() + RENDER_THREADS);
         Velocity.setProperty("class.resource.loader.class", "org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader");
         Velocity.init();
 
         Files.createDirectories(Paths.get(args[0]));
 
-        val devicesCount = Integer.parseInt(args[1]);
-        val slotsPerDevice = Integer.parseInt(args[2]);
-        val queueBytesBudget = Long.parseLong(args[3]) * 1024 * 1024;
-        val dedupTableSize = Integer.parseInt(args[4]);
-        val maxRatio = Float.parseFloat(args[5]);
-        val maxDepth = Integer.parseInt(args[6]);
-        SortOrExtend.init(devicesCount, slotsPerDevice, queueBytesBudget, dedupTableSize, maxRatio, maxDepth);
+        final SortingBackend sortingBackend;
+        final float maxRatio;
+        final int maxDepth;
+        if ("cpu".equals(args[1])) {
+            val splitDepth = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+            sortingBackend = new CPUSortingSearch(Runtime.getRuntime().availableProcessors(),
+                    CPUSortingSearch.DEFAULT_TABLE_BYTES, splitDepth, true);
+            maxRatio = Float.parseFloat(args[2]);
+            maxDepth = Integer.parseInt(args[3]);
+        } else {
+            val devicesCount = Integer.parseInt(args[1]);
+            val slotsPerDevice = Integer.parseInt(args[2]);
+            val queueBytesBudget = Long.parseLong(args[3]) * 1024 * 1024;
+            val dedupTableSize = Integer.parseInt(args[4]);
+            sortingBackend = new GPUSortingSearch(devicesCount, slotsPerDevice, queueBytesBudget, dedupTableSize);
+            maxRatio = Float.parseFloat(args[5]);
+            maxDepth = Integer.parseInt(args[6]);
+        }
+        CanonicalCache.enable(canonicalCacheSize);
+        val planner = DepthSchedulePlanner.load(Paths.get(args[0], DepthSchedulePlanner.FILE_NAME));
+        val sink = archive ? ZipPageSink.open(Paths.get(args[0])) : new DirectoryPageSink();
+        val renderPipeline = new RenderPipeline(sink, RENDER_THREADS, RENDER_QUEUE_SIZE, deferRendering);
+        SortOrExtend.init(sortingBackend, planner, maxRatio, maxDepth, VISITED_SET_BYTES, renderPipeline, MAX_IN_FLIGHT,
+                byLevel);
 
         Files.copy(ProofGenerator.class.getClassLoader().getResourceAsStream("index.html"),
                 Paths.get(args[0] + "/index.html"), REPLACE_EXISTING);
@@ -35,7 +111,17 @@ public class ProofGenerator {
         Files.copy(ProofGenerator.class.getClassLoader().getResourceAsStream("draw-config.js"),
                 Paths.get(args[0] + "/draw-config.js"), REPLACE_EXISTING);
 
-        Extensions.generate(args[0]);
-        Combinations.generate(args[0]);
+        Extensions.generate(args[0], sink);
+        SortOrExtend.closeStores();
+        Combinations.generate(args[0], sink);
+        SortOrExtend.closeStores();
+        renderPipeline.shutdown();
+        sink.close();
+
+        planner.save();
+
+        val stats = CanonicalCache.stats();
+        System.out.printf("Canonical cache: %d hits, %d misses, %d evictions%n",
+                stats.hitCount(), stats.missCount(), stats.evictionCount());
     }
 }
@@ -0,0 +1,181 @@
+package br.unb.cic.tdp.proof;
+
+import br.unb.cic.tdp.base.Configuration;
+import br.unb.cic.tdp.permutation.Cycle;
+import br.unb.cic.tdp.permutation.MulticyclePermutation;
+import com.google.common.primitives.Ints;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.Velocity;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static br.unb.cic.tdp.permutation.PermutationGroups.computeProduct;
+import static br.unb.cic.tdp.proof.SortOrExtend.permutationToJsArray;
+
+/**
+ * Renders the sorting pages apart from the searches, so that the workers searching do not wait for the templates nor
+ * for the disk. The pages are either queued, up to a bound after which the searches wait, to a small pool of writers,
+ * or deferred until the end of the search phase and then rendered from the {@link ResultStore}.
+ * <p>
+ * A sorting is only stored once its page is written (or, if deferred, to be rendered from the store), so that every
+ * solved configuration in the store has a page, even after a crash.
+ */
+final class RenderPipeline {
+
+    private final PageSink sink;
+    private final boolean deferred;
+    private final int permits;
+    private final Semaphore slots;
+    private final ExecutorService writers;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    /**
+     * @param threads   number of writer threads
+     * @param queueSize number of pages waiting to be rendered, beyond which the searches wait
+     * @param deferred  whether the pages are only rendered, from the result store, at the end of the search phase
+     */
+    RenderPipeline(final PageSink sink, final int threads, final int queueSize, final boolean deferred) {
+        this.sink = sink;
+        this.deferred = deferred;
+        this.permits = threads + queueSize;
+        // fair, so that a flush is not overtaken by the pages queued after it
+        this.slots = new Semaphore(permits, true);
+        this.writers = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Handles the sorting found for a canonical configuration: queues its page and then stores it, or stores it
+     * right away if rendering is deferred.
+     */
+    void solved(final ResultStore store, final String outputDir, final Configuration canonical,
+                final List<Cycle> sorting, final long nanos) {
+        val signature = canonical.getSignature().getContent();
+        if (deferred) {
+            store.append(signature, VisitedSet.Outcome.SOLVED, sorting, sorting.size(), nanos);
+            return;
+        }
+
+        // known as solved by the other searches while its page is waiting
+        store.remember(signature, VisitedSet.Outcome.SOLVED);
+        submit(() -> {
+            render(outputDir, canonical, sorting);
+            store.append(signature, VisitedSet.Outcome.SOLVED, sorting, sorting.size(), nanos);
+        });
+    }
+
+    /**
+     * @return whether the page of the canonical configuration was written, by this run or a previous one
+     */
+    boolean hasPage(final String outputDir, final Configuration canonical) {
+        return sink.exists(pageOf(outputDir, canonical));
+    }
+
+    /**
+     * Waits for the pages of the output directory to be written, rendering first the stored ones if rendering is
+     * deferred. Deferred pages already written by a previous run are kept. If the sink loses pages on a crash, the
+     * stored sortings whose pages were lost are rendered again as well.
+     */
+    @SneakyThrows
+    void finish(final ResultStore store, final String outputDir) {
+        // the pages queued store their sortings once written, which must not wait for the scan below
+        flush();
+
+        if (deferred || !sink.writesThrough()) {
+            store.forEachSorting((signature, sorting) -> {
+                val canonical = Configuration.ofSignature(signature);
+                if (!hasPage(outputDir, canonical)) {
+                    submit(() -> render(outputDir, canonical, sorting));
+                }
+            });
+        }
+
+        flush();
+    }
+
+    /**
+     * Waits for the pages queued so far to be written.
+     */
+    @SneakyThrows
+    void flush() {
+        slots.acquire(permits);
+        slots.release(permits);
+
+        val error = failure.getAndSet(null);
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    void shutdown() {
+        writers.shutdown();
+    }
+
+    @SneakyThrows
+    private void submit(final Runnable job) {
+        slots.acquire();
+        writers.execute(() -> {
+            try {
+                job.run();
+            } catch (final Throwable t) {
+                failure.compareAndSet(null, t);
+            } finally {
+                slots.release();
+            }
+        });
+    }
+
+    private static Path pageOf(final String outputDir, final Configuration canonical) {
+        return Paths.get(outputDir, canonical.getSpi() + ".html");
+    }
+
+    private void render(final String outputDir, final Configuration canonical, final List<Cycle> sorting) {
+        val writer = new StringWriter();
+        renderSorting(canonical, sorting, writer);
+        sink.write(pageOf(outputDir, canonical), writer.toString());
+    }
+
+    static void renderSorting(final Configuration canonicalConfig, final List<Cycle> sorting, final Writer writer) {
+        VelocityContext context = new VelocityContext();
+
+        context.put("spi", canonicalConfig.getSpi());
+        context.put("piSize", canonicalConfig.getPi().size());
+        context.put("jsSpi", permutationToJsArray(canonicalConfig.getSpi()));
+        context.put("jsPi", cycleToJsArray(canonicalConfig.getPi()));
+        context.put("sorting", sorting);
+
+        val spis = new ArrayList<MulticyclePermutation>();
+        val jsSpis = new ArrayList<String>();
+        val jsPis = new ArrayList<String>();
+        var spi = canonicalConfig.getSpi();
+        var pi = canonicalConfig.getPi();
+        for (final Cycle move : sorting) {
+            spis.add(spi = computeProduct(spi, move.getInverse()));
+            jsSpis.add(permutationToJsArray(spi));
+            jsPis.add(cycleToJsArray(pi = computeProduct(move, pi).asNCycle()));
+        }
+        context.put("spis", spis);
+        context.put("jsSpis", jsSpis);
+        context.put("jsPis", jsPis);
+
+        val template = Velocity.getTemplate("templates/sorting.html");
+        template.merge(context, writer);
+    }
+
+    private static String cycleToJsArray(final Cycle cycle) {
+        return "[" + Ints.asList(cycle.getSymbols()).stream()
+                .map(s -> Integer.toString(s))
+                .collect(Collectors.joining(",")) + "]";
+    }
+}
@@ -0,0 +1,304 @@
+package br.unb.cic.tdp.proof;
+
+import br.unb.cic.tdp.permutation.Cycle;
+import lombok.SneakyThrows;
+import lombok.val;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Append-only store of the outcomes of the searches of a proof run, kept in the output directory so that a restarted
+ * run knows them without checking the files of each configuration again. Each record holds:
+ * <ul>
+ * <li>the length of the record body, followed by the body:</li>
+ * <li>the number of symbols n and the n values of the canonical signature;</li>
+ * <li>the outcome, the depth searched (the length of the sorting if one was found) and the search time in
+ * nanoseconds;</li>
+ * <li>the number of moves m, followed by m symbol triples of the sorting;</li>
+ * <li>the CRC32 of the body.</li>
+ * </ul>
+ * Records are appended to segments of up to {@value #SEGMENT_BYTES} bytes, which are synced every
+ * {@value #SYNC_BATCH} records. Opening a store replays its segments into a {@link VisitedSet}; a record cut short by
+ * a crash fails its length or checksum and is truncated, along with whatever follows it. Once the visited set has no
+ * room left for an outcome, the store is {@link #overflowed} and the outcomes it does not hold must be found elsewhere.
+ */
+final class ResultStore implements Closeable {
+
+    static final String DIR_NAME = "results";
+
+    static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+    static final int SYNC_BATCH = 1024;
+
+    private static final int MAX_BODY_BYTES = 2 + 255 * 2 + 1 + 1 + 8 + 1 + 255 * 3;
+
+    private final Path dir;
+    private final VisitedSet visited;
+    private final int recovered;
+
+    private volatile boolean overflowed;
+    private FileChannel segment;
+    private int segmentIndex;
+    private int unsynced;
+
+    private ResultStore(final Path dir, final VisitedSet visited, final int recovered, final boolean overflowed,
+                        final FileChannel segment, final int segmentIndex) {
+        this.dir = dir;
+        this.visited = visited;
+        this.recovered = recovered;
+        this.overflowed = overflowed;
+        this.segment = segment;
+        this.segmentIndex = segmentIndex;
+    }
+
+    /**
+     * Opens the store kept in <code>dir</code>, creating it if needed, and indexes its records in a visited set of
+     * <code>visitedSetBytes</code>.
+     */
+    @SneakyThrows
+    static ResultStore open(final Path dir, final long visitedSetBytes) {
+        Files.createDirectories(dir);
+        val visited = new VisitedSet(visitedSetBytes);
+
+        val overflowed = new boolean[1];
+        var recovered = 0;
+        var segmentIndex = 0;
+        while (Files.exists(segmentPath(dir, segmentIndex + 1))) {
+            recovered += replay(segmentPath(dir, segmentIndex), visited, overflowed);
+            segmentIndex++;
+        }
+        recovered += replay(segmentPath(dir, segmentIndex), visited, overflowed);
+
+        val segment = FileChannel.open(segmentPath(dir, segmentIndex), CREATE, WRITE);
+        segment.position(segment.size());
+        return new ResultStore(dir, visited, recovered, overflowed[0], segment, segmentIndex);
+    }
+
+    /**
+     * @return the number of records found when the store was opened
+     */
+    int recovered() {
+        return recovered;
+    }
+
+    /**
+     * @return whether the visited set had no room left for some outcome, which {@link #outcome} then does not know
+     */
+    boolean overflowed() {
+        return overflowed;
+    }
+
+    /**
+     * @return the outcome stored or remembered for the canonical configuration with the given signature, if any
+     */
+    Optional<VisitedSet.Outcome> outcome(final short[] signature) {
+        return visited.outcome(signature);
+    }
+
+    /**
+     * Remembers for the rest of the run an outcome known from elsewhere, without storing it.
+     */
+    void remember(final short[] signature, final VisitedSet.Outcome outcome) {
+        record(signature, outcome);
+    }
+
+    /**
+     * Stores the outcome of the search of the canonical configuration with the given signature.
+     *
+     * @param sorting the sorting found, empty for a bad case
+     * @param depth   the length of the sorting, or the largest bound searched for a bad case
+     */
+    @SneakyThrows
+    void append(final short[] signature, final VisitedSet.Outcome outcome, final List<Cycle> sorting,
+                final int depth, final long nanos) {
+        val bodyBytes = 2 + signature.length * 2 + 1 + 1 + 8 + 1 + sorting.size() * 3;
+        val record = ByteBuffer.allocate(4 + bodyBytes + 4);
+        record.putInt(bodyBytes);
+        record.putShort((short) signature.length);
+        for (val value : signature) {
+            record.putShort(value);
+        }
+        record.put((byte) outcome.ordinal());
+        record.put((byte) depth);
+        record.putLong(nanos);
+        record.put((byte) sorting.size());
+        for (val move : sorting) {
+            for (val symbol : move.getSymbols()) {
+                record.put((byte) symbol);
+            }
+        }
+        val crc32 = new CRC32();
+        crc32.update(record.array(), 4, bodyBytes);
+        record.putInt((int) crc32.getValue());
+        record.flip();
+
+        synchronized (this) {
+            if (segment.position() + record.remaining() > SEGMENT_BYTES) {
+                segment.force(false);
+                segment.close();
+                segment = FileChannel.open(segmentPath(dir, ++segmentIndex), CREATE, WRITE);
+                unsynced = 0;
+            }
+            while (record.hasRemaining()) {
+                segment.write(record);
+            }
+            if (++unsynced == SYNC_BATCH) {
+                segment.force(false);
+                unsynced = 0;
+            }
+        }
+
+        record(signature, outcome);
+    }
+
+    private void record(final short[] signature, final VisitedSet.Outcome outcome) {
+        if (!visited.record(signature, outcome)) {
+            overflowed = true;
+        }
+    }
+
+    /**
+     * Forces the records appended so far to the disk.
+     */
+    @SneakyThrows
+    synchronized void sync() {
+        segment.force(false);
+        unsynced = 0;
+    }
+
+    /**
+     * Passes the signature and the sorting of each solved configuration stored to <code>consumer</code>. The segments
+     * are scanned without holding the store, so that the consumer may wait for records being appended; those are not
+     * necessarily passed.
+     */
+    void forEachSorting(final BiConsumer<short[], List<Cycle>> consumer) {
+        forEachRecord(body -> {
+            val signature = readSignature(body);
+            if (VisitedSet.Outcome.values()[body.get()] == VisitedSet.Outcome.SOLVED) {
+                // depth and time
+                body.position(body.position() + 1 + 8);
+                val sorting = new ArrayList<Cycle>();
+                val moves = body.get() & 0xFF;
+                for (int m = 0; m < moves; m++) {
+                    sorting.add(Cycle.of(body.get() & 0xFF, body.get() & 0xFF, body.get() & 0xFF));
+                }
+                consumer.accept(signature, sorting);
+            }
+        });
+    }
+
+    /**
+     * Passes the canonical signature of each bad case stored to <code>consumer</code>, the same way as
+     * {@link #forEachSorting}.
+     */
+    void forEachBad(final Consumer<short[]> consumer) {
+        forEachRecord(body -> {
+            val signature = readSignature(body);
+            if (VisitedSet.Outcome.values()[body.get()] == VisitedSet.Outcome.BAD) {
+                consumer.accept(signature);
+            }
+        });
+    }
+
+    @SneakyThrows
+    private void forEachRecord(final Consumer<ByteBuffer> consumer) {
+        final int lastIndex;
+        synchronized (this) {
+            segment.force(false);
+            lastIndex = segmentIndex;
+        }
+        for (int index = 0; index <= lastIndex; index++) {
+            scan(segmentPath(dir, index), consumer);
+        }
+    }
+
+    @SneakyThrows
+    @Override
+    public synchronized void close() {
+        segment.force(false);
+        segment.close();
+    }
+
+    /**
+     * Indexes the valid records of a segment, truncating it after the last one.
+     *
+     * @return the number of valid records
+     */
+    @SneakyThrows
+    private static int replay(final Path path, final VisitedSet visited, final boolean[] overflowed) {
+        val records = new int[1];
+        val valid = scan(path, body -> {
+            if (!visited.record(readSignature(body), VisitedSet.Outcome.values()[body.get()])) {
+                overflowed[0] = true;
+            }
+            records[0]++;
+        });
+
+        if (Files.exists(path) && valid < Files.size(path)) {
+            System.out.println("Truncating " + (Files.size(path) - valid) + " bytes of " + path);
+            try (val channel = FileChannel.open(path, WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+        return records[0];
+    }
+
+    /**
+     * Passes the body of each valid record of a segment to <code>consumer</code>, stopping at the first record whose
+     * length or checksum is wrong.
+     *
+     * @return the number of bytes of the valid records
+     */
+    @SneakyThrows
+    private static int scan(final Path path, final Consumer<ByteBuffer> consumer) {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+
+        // read rather than mapped, since the file may be truncated
+        val buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        val crc32 = new CRC32();
+        var valid = 0;
+        while (buffer.limit() - valid >= 4) {
+            val bodyBytes = buffer.getInt(valid);
+            if (bodyBytes <= 0 || bodyBytes > MAX_BODY_BYTES || buffer.limit() - valid - 4 < bodyBytes + 4) {
+                break;
+            }
+
+            val body = buffer.slice(valid + 4, bodyBytes);
+            crc32.reset();
+            crc32.update(body);
+            if ((int) crc32.getValue() != buffer.getInt(valid + 4 + bodyBytes)) {
+                break;
+            }
+
+            consumer.accept(body.rewind());
+            valid += 4 + bodyBytes + 4;
+        }
+        return valid;
+    }
+
+    private static short[] readSignature(final ByteBuffer body) {
+        val signature = new short[body.getShort()];
+        for (int i = 0; i < signature.length; i++) {
+            signature[i] = body.getShort();
+        }
+        return signature;
+    }
+
+    private static Path segmentPath(final Path dir, final int index) {
+        return dir.resolve(String.format("segment-%05d.log", index));
+    }
+}
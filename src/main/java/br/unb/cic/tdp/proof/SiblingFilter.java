@@ -0,0 +1,68 @@
+package br.unb.cic.tdp.proof;
+
+import br.unb.cic.tdp.base.Configuration;
+import br.unb.cic.tdp.base.SignatureInvariant;
+import lombok.val;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Collects the signatures of the extensions of a configuration, generated into a reused buffer, and keeps those not
+ * equivalent to an extension collected before them. The extensions are bucketed by their {@link SignatureInvariant}:
+ * the first one of a bucket is kept without being canonicalized, and the next ones are compared by their canonical
+ * signatures, computed on the buffer. A discarded extension only costs its canonical signature; the configurations
+ * are only built for the extensions kept.
+ */
+public final class SiblingFilter {
+
+    private static final class Bucket {
+        final List<short[]> signatures = new ArrayList<>(1);
+        List<short[]> canonicals;
+    }
+
+    private final LinkedHashMap<Long, Bucket> buckets = new LinkedHashMap<>();
+
+    /**
+     * Adds the extension whose signature is the first <code>length</code> values of <code>buffer</code>, which may be
+     * reused once this returns.
+     */
+    public void add(final short[] buffer, final int length) {
+        val bucket = buckets.computeIfAbsent(SignatureInvariant.of(buffer, length), invariant -> new Bucket());
+        if (bucket.signatures.isEmpty()) {
+            bucket.signatures.add(Arrays.copyOf(buffer, length));
+            return;
+        }
+
+        if (bucket.canonicals == null) {
+            val first = bucket.signatures.get(0);
+            bucket.canonicals = new ArrayList<>(1);
+            bucket.canonicals.add(Configuration.canonicalSignature(first, first.length));
+        }
+        val canonical = Configuration.canonicalSignature(buffer, length);
+        for (val other : bucket.canonicals) {
+            if (Arrays.equals(canonical, other)) {
+                return;
+            }
+        }
+        bucket.signatures.add(Arrays.copyOf(buffer, length));
+        bucket.canonicals.add(canonical);
+    }
+
+    /**
+     * Passes the extensions kept, in the order they were added to their buckets, to <code>consumer</code>.
+     */
+    public void forEach(final Consumer<Configuration> consumer) {
+        for (val bucket : buckets.values()) {
+            for (int i = 0; i < bucket.signatures.size(); i++) {
+                val signature = bucket.signatures.get(i);
+                consumer.accept(bucket.canonicals == null
+                        ? Configuration.ofSignature(signature)
+                        : Configuration.ofSignature(signature, bucket.canonicals.get(i)));
+            }
+        }
+    }
+}
@@ -1,81 +1,180 @@
 package br.unb.cic.tdp.proof;
 
 import br.unb.cic.tdp.base.Configuration;
-import br.unb.cic.tdp.base.GPUSortingSearch;
+import br.unb.cic.tdp.base.SortingBackend;
 import br.unb.cic.tdp.permutation.Cycle;
 import br.unb.cic.tdp.permutation.MulticyclePermutation;
 import br.unb.cic.tdp.permutation.OneLinePermutation;
 import com.google.common.primitives.Ints;
-import lombok.AllArgsConstructor;
 import lombok.val;
-import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.Velocity;
-
-import java.io.File;
-import java.io.FileWriter;
-import java.io.RandomAccessFile;
-import java.io.Writer;
-import java.util.ArrayList;
+
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
-import static br.unb.cic.tdp.permutation.PermutationGroups.computeProduct;
-
-@AllArgsConstructor
 public abstract class SortOrExtend extends RecursiveAction {
     private static final SortingCoordinator<Configuration, Boolean> coordinator = new SortingCoordinator<>();
 
-    private static GPUSortingSearch gpuSortingSearch;
+    private static SortingBackend sortingBackend;
+    private static DepthSchedulePlanner planner;
     private static float minRate;
     private static int maxDepth;
-
+    private static long visitedSetBytes;
+    private static RenderPipeline renderPipeline;
+    private static int maxInFlight;
+    private static boolean levelOrdered;
+
+    /**
+     * Result store of each output directory, opened by the first task writing to it.
+     */
+    private static final ConcurrentHashMap<String, ResultStore> stores = new ConcurrentHashMap<>();
+
+    /**
+     * @param visitedSetBytes memory budget of the set of the configurations visited of each output directory
+     * @param maxInFlight     maximum number of tasks forked and not completed of each {@link Frontier}
+     * @param levelOrdered    whether the configurations are explored level by level, see {@link LevelFrontier}
+     */
     public static void init(
-            final int devicesCount,
-            final int slotsPerDevice,
-            final long queueBytesBudget,
-            final int dedupTableSize,
+            final SortingBackend sortingBackend,
+            final DepthSchedulePlanner planner,
             final float maxRatio,
-            final int maxDepth
+            final int maxDepth,
+            final long visitedSetBytes,
+            final RenderPipeline renderPipeline,
+            final int maxInFlight,
+            final boolean levelOrdered
     ) {
-        SortOrExtend.gpuSortingSearch = new GPUSortingSearch(devicesCount, slotsPerDevice, queueBytesBudget, dedupTableSize);
+        SortOrExtend.sortingBackend = sortingBackend;
+        SortOrExtend.planner = planner;
         SortOrExtend.minRate = 2 / maxRatio;
         SortOrExtend.maxDepth = maxDepth;
+        SortOrExtend.visitedSetBytes = visitedSetBytes;
+        SortOrExtend.renderPipeline = renderPipeline;
+        SortOrExtend.maxInFlight = maxInFlight;
+        SortOrExtend.levelOrdered = levelOrdered;
+    }
+
+    /**
+     * @return a frontier scheduling the tasks of an output directory, spilling the configurations beyond those in
+     * flight and keeping its journal in its <code>frontier</code> directory
+     */
+    public static Frontier frontier(final ForkJoinPool pool, final String outputDir,
+                                    final Function<Configuration, SortOrExtend> tasks) {
+        val dir = Paths.get(outputDir, "frontier");
+        val journal = FrontierJournal.open(dir);
+        if (levelOrdered) {
+            return new LevelFrontier(pool, maxInFlight, tasks, dir, visitedSetBytes, journal,
+                    () -> checkpoint(outputDir));
+        }
+        return new Frontier(pool, maxInFlight, tasks, new SpillQueue(dir, maxInFlight), journal,
+                () -> checkpoint(outputDir));
+    }
+
+    /**
+     * Waits for the pages queued for an output directory to be written, then syncs its result store.
+     */
+    private static void checkpoint(final String outputDir) {
+        renderPipeline.flush();
+        storeOf(outputDir).sync();
+    }
+
+    /**
+     * Waits for the pages of the output directories searched so far to be rendered, then syncs and closes their
+     * result stores, releasing their visited sets.
+     */
+    public static void closeStores() {
+        stores.forEach((outputDir, store) -> {
+            renderPipeline.finish(store, outputDir);
+            store.close();
+        });
+        stores.clear();
+    }
+
+    /**
+     * Passes the canonical signature of each bad case stored for an output directory to <code>consumer</code>.
+     */
+    public static void forEachBadCase(final String outputDir, final Consumer<short[]> consumer) {
+        storeOf(outputDir).forEachBad(consumer);
+    }
+
+    private static ResultStore storeOf(final String outputDir) {
+        return stores.computeIfAbsent(outputDir, dir -> {
+            val store = ResultStore.open(Paths.get(dir, ResultStore.DIR_NAME), visitedSetBytes);
+            System.out.println("Recovered " + store.recovered() + " results from " + dir);
+            return store;
+        });
     }
 
     protected final Configuration configuration;
     protected final String outputDir;
 
+    /**
+     * Set by the frontier that scheduled this task, and whether the task counts as in flight.
+     */
+    Frontier frontier;
+    boolean inFlight;
+
+    protected SortOrExtend(final Configuration configuration, final String outputDir) {
+        this.configuration = configuration;
+        this.outputDir = outputDir;
+    }
+
     @Override
     protected void compute() {
+        var done = false;
+        try {
+            sortOrExtend();
+            done = true;
+        } finally {
+            frontier.completed(this, done);
+        }
+    }
+
+    /**
+     * Schedules an extension of the configuration.
+     */
+    protected void submit(final Configuration extension) {
+        frontier.submit(extension);
+    }
+
+    private void sortOrExtend() {
 
         val canonical = configuration.getCanonical();
+        val signature = canonical.getSignature().getContent();
+
+        // configurations visited during this run or stored by a previous one are known without touching the filesystem
+        val store = storeOf(outputDir);
+        val outcome = store.outcome(signature);
+        if (outcome.isPresent()) {
+            if (outcome.get() == VisitedSet.Outcome.BAD) {
+                extend(configuration);
+            }
+            return;
+        }
 
         val result = coordinator.tryCompute(canonical, () -> {
-            val sortingFile = new File(outputDir + "/" + canonical.getSpi() + ".html");
-            if (sortingFile.exists()) {
+            // only a configuration the visited set had no room for may have been solved without it knowing
+            if (store.overflowed() && renderPipeline.hasPage(outputDir, canonical)) {
+                store.remember(signature, VisitedSet.Outcome.SOLVED);
                 return Optional.of(Boolean.TRUE);
             }
 
-            val badCase = new File(outputDir + "/bad-cases/" + canonical.getSpi());
-
-            if (!badCase.exists()) {
-                val sorting = searchForSorting(canonical);
-                if (sorting.isPresent()) {
-                    try (val file = new RandomAccessFile(outputDir + "/" + canonical.getSpi() + ".html", "rw")) {
-                        try (val writer = new FileWriter(file.getFD())) {
-                            renderSorting(canonical, sorting.get(), writer);
-                            return Optional.of(Boolean.TRUE);
-                        }
-                    }
-                } else {
-                    try (val writer = new FileWriter(outputDir + "/bad-cases/" + canonical.getSpi())) {
-                        // mark as bad case
-                    }
-                }
+            val bounds = bounds(canonical);
+            val start = System.nanoTime();
+            val sorting = searchForSorting(canonical, bounds);
+            val nanos = System.nanoTime() - start;
+            if (sorting.isPresent()) {
+                renderPipeline.solved(store, outputDir, canonical, sorting.get(), nanos);
+                return Optional.of(Boolean.TRUE);
             }
 
+            store.append(signature, VisitedSet.Outcome.BAD, List.of(), bounds[bounds.length - 1], nanos);
             return Optional.empty();
         });
 
@@ -86,22 +185,26 @@ public abstract class SortOrExtend extends RecursiveAction {
         }
     }
 
-    private Optional<List<Cycle>> searchForSorting(final Configuration configuration) {
+    private static int[] bounds(final Configuration configuration) {
+        val upperBound = Math.floor(configuration.getSpi().get3Norm() * (2 / minRate));
+        if (upperBound > 8) {
+            return new int[]{4, 8, (int) Math.min(upperBound, maxDepth)};
+        } else if (upperBound > 4) {
+            return new int[]{4, (int) upperBound};
+        }
+        return new int[]{4};
+    }
+
+    private Optional<List<Cycle>> searchForSorting(final Configuration configuration, final int[] bounds) {
         val pi = MulticyclePermutation.CANONICAL_PI_BYTE[configuration.getPi().size()];
         val spi = configuration.getSpi();
-        val upperBound = Math.floor(spi.get3Norm() * (2 / minRate));
         val oneLinePermutation = new OneLinePermutation(spi.getOneLineNotation());
         val evenCycles = spi.getNumberOfEvenCycles();
 
-        var sorting = gpuSortingSearch.search(pi, oneLinePermutation, evenCycles, minRate, 4, false);
-
-        if (sorting.isEmpty() && upperBound > 4) {
-            sorting = gpuSortingSearch.search(pi, oneLinePermutation, evenCycles, minRate, (int) Math.min(upperBound, 8), false);
-        }
-
-        if (sorting.isEmpty() && upperBound > 8) {
-            sorting = gpuSortingSearch.search(pi, oneLinePermutation, evenCycles, minRate, (int) Math.min(upperBound, maxDepth), false);
-        }
+        val configurationClass = DepthSchedulePlanner.classOf(spi);
+        val sorting = sortingBackend.searchDeepening(pi, oneLinePermutation, evenCycles, minRate,
+                planner.schedule(configurationClass, bounds), false, planner.listener(configurationClass));
+        planner.recordOutcome(configurationClass);
 
         if (!sorting.isEmpty()) {
             return Optional.of(sorting.stream().map(move -> Cycle.of(move[0], move[1], move[2])).toList());
@@ -110,33 +213,6 @@ public abstract class SortOrExtend extends RecursiveAction {
         return Optional.empty();
     }
 
-    private static void renderSorting(final Configuration canonicalConfig, final List<Cycle> sorting, final Writer writer) {
-        VelocityContext context = new VelocityContext();
-
-        context.put("spi", canonicalConfig.getSpi());
-        context.put("piSize", canonicalConfig.getPi().size());
-        context.put("jsSpi", permutationToJsArray(canonicalConfig.getSpi()));
-        context.put("jsPi", cycleToJsArray(canonicalConfig.getPi()));
-        context.put("sorting", sorting);
-
-        val spis = new ArrayList<MulticyclePermutation>();
-        val jsSpis = new ArrayList<String>();
-        val jsPis = new ArrayList<String>();
-        var spi = canonicalConfig.getSpi();
-        var pi = canonicalConfig.getPi();
-        for (final Cycle move : sorting) {
-            spis.add(spi = computeProduct(spi, move.getInverse()));
-            jsSpis.add(permutationToJsArray(spi));
-            jsPis.add(cycleToJsArray(pi = computeProduct(move, pi).asNCycle()));
-        }
-        context.put("spis", spis);
-        context.put("jsSpis", jsSpis);
-        context.put("jsPis", jsPis);
-
-        val template = Velocity.getTemplate("templates/sorting.html");
-        template.merge(context, writer);
-    }
-
     public static String permutationToJsArray(final MulticyclePermutation permutation) {
         return "[" + permutation
                 .stream().map(c -> "[" + Ints.asList(c.getSymbols()).stream()
@@ -145,11 +221,5 @@ public abstract class SortOrExtend extends RecursiveAction {
                 .collect(Collectors.joining(",")) + "]";
     }
 
-    private static String cycleToJsArray(final Cycle cycle) {
-        return "[" + Ints.asList(cycle.getSymbols()).stream()
-                .map(s -> Integer.toString(s))
-                .collect(Collectors.joining(",")) + "]";
-    }
-
     protected abstract void extend(final Configuration configuration);
 }
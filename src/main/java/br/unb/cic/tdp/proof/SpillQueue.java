@@ -0,0 +1,128 @@
+package br.unb.cic.tdp.proof;
+
+import lombok.SneakyThrows;
+import lombok.val;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+
+/**
+ * Queue of the signatures of the configurations waiting to be scheduled. Up to <code>hotCapacity</code> signatures
+ * are kept in memory; the others are appended to sequential segment files of up to <code>hotCapacity</code>
+ * signatures each, as the number of values followed by the values. Once the signatures in memory are taken, a whole
+ * segment is read back and deleted.
+ * <p>
+ * The segments left in the directory by an interrupted run are deleted when the queue is created, so that they are
+ * neither overwritten nor mistaken for segments of this run.
+ */
+final class SpillQueue {
+
+    private final Path dir;
+    private final int hotCapacity;
+    private final ArrayDeque<short[]> hot = new ArrayDeque<>();
+    private final ArrayDeque<Path> segments = new ArrayDeque<>();
+
+    private DataOutputStream writer;
+    private Path writing;
+    private int written;
+    private int nextSegment;
+    private long spilled;
+
+    SpillQueue(final Path dir, final int hotCapacity) {
+        this.dir = dir;
+        this.hotCapacity = hotCapacity;
+        clear(dir);
+    }
+
+    /**
+     * Deletes the segments in <code>dir</code>, if any.
+     */
+    @SneakyThrows
+    static void clear(final Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (val segments = Files.newDirectoryStream(dir, "frontier-*.bin")) {
+            for (val segment : segments) {
+                Files.delete(segment);
+            }
+        }
+    }
+
+    @SneakyThrows
+    synchronized void push(final short[] signature) {
+        if (hot.size() < hotCapacity) {
+            hot.push(signature);
+            return;
+        }
+
+        if (writer == null) {
+            Files.createDirectories(dir);
+            writing = dir.resolve(String.format("frontier-%05d.bin", nextSegment++));
+            writer = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(writing), 1 << 16));
+        }
+        writer.writeShort(signature.length);
+        for (val value : signature) {
+            writer.writeShort(value);
+        }
+        spilled++;
+        if (++written == hotCapacity) {
+            closeSegment();
+        }
+    }
+
+    /**
+     * @return the next signature, or null if the queue is empty
+     */
+    synchronized short[] poll() {
+        if (hot.isEmpty()) {
+            load();
+        }
+        return hot.poll();
+    }
+
+    synchronized boolean isEmpty() {
+        return hot.isEmpty() && segments.isEmpty() && writer == null;
+    }
+
+    /**
+     * @return the number of signatures written to disk so far
+     */
+    synchronized long spilled() {
+        return spilled;
+    }
+
+    @SneakyThrows
+    private void load() {
+        if (segments.isEmpty() && writer != null) {
+            closeSegment();
+        }
+
+        val segment = segments.poll();
+        if (segment == null) {
+            return;
+        }
+
+        val buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        while (buffer.hasRemaining()) {
+            val signature = new short[buffer.getShort()];
+            for (int i = 0; i < signature.length; i++) {
+                signature[i] = buffer.getShort();
+            }
+            hot.push(signature);
+        }
+        Files.delete(segment);
+    }
+
+    @SneakyThrows
+    private void closeSegment() {
+        writer.close();
+        segments.push(writing);
+        writer = null;
+        written = 0;
+    }
+}
@@ -0,0 +1,160 @@
+package br.unb.cic.tdp.proof;
+
+import lombok.val;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Optional;
+
+/**
+ * Off-heap set of the canonical configurations already visited by the proof generation, with the outcome of their
+ * search. Without it, a configuration reached again once its computation is over can only be recognized by the files
+ * written for it, which costs two filesystem calls per visited node.
+ * <p>
+ * Configurations are identified by a 125-bit fingerprint of their canonical signature, so that collisions are
+ * negligible even for billions of nodes. The table is open-addressed with linear probing, lock-free, and never
+ * resized: once the probes of a fingerprint are exhausted, it is not recorded, and the callers fall back to the files.
+ * Each slot holds two longs: the first fingerprint with the outcome in its two lowest bits, claimed with a CAS, and
+ * then the second fingerprint, which readers wait for if they find the slot claimed but not yet completed.
+ * <p>
+ * The memory comes from direct buffers, so the budget counts against <code>-XX:MaxDirectMemorySize</code>.
+ */
+final class VisitedSet {
+
+    enum Outcome {
+        SOLVED, BAD
+    }
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private static final int SLOT_BYTES = 16;
+
+    /**
+     * Slots per direct buffer (1GB), since a buffer cannot hold more than 2GB.
+     */
+    private static final int CHUNK_BITS = 26;
+
+    private static final int MAX_PROBES = 64;
+
+    private static final long OUTCOME_MASK = 3;
+
+    private static final int INSERTED = 0;
+    private static final int PRESENT = 1;
+    private static final int FULL = 2;
+
+    private final ByteBuffer[] chunks;
+    private final long slotMask;
+
+    VisitedSet(final long bytesBudget) {
+        val slots = Long.highestOneBit(Math.max(bytesBudget / SLOT_BYTES, 1));
+        val chunkSlots = Math.min(slots, 1L << CHUNK_BITS);
+        this.slotMask = slots - 1;
+        this.chunks = new ByteBuffer[(int) (slots / chunkSlots)];
+        for (int i = 0; i < chunks.length; i++) {
+            // atomic accesses require the longs to be aligned
+            chunks[i] = ByteBuffer.allocateDirect((int) (chunkSlots * SLOT_BYTES) + Long.BYTES).alignedSlice(Long.BYTES);
+        }
+    }
+
+    /**
+     * @return the outcome recorded for the canonical configuration with the given signature, if any
+     */
+    Optional<Outcome> outcome(final short[] signature) {
+        val first = fingerprint(signature, 0);
+        val second = fingerprint(signature, first) | 1;
+
+        var slot = first & slotMask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            val chunk = chunks[(int) (slot >>> CHUNK_BITS)];
+            val offset = offsetOf(slot);
+            val word = (long) LONGS.getVolatile(chunk, offset);
+            if (word == 0) {
+                return Optional.empty();
+            }
+            if ((word & ~OUTCOME_MASK) == (first & ~OUTCOME_MASK) && awaitSecond(chunk, offset) == second) {
+                return Optional.of(Outcome.values()[(int) (word & OUTCOME_MASK) - 1]);
+            }
+            slot = (slot + 1) & slotMask;
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Records the outcome of the canonical configuration with the given signature. The first outcome recorded for a
+     * configuration is kept.
+     *
+     * @return false if the table had no room left for it
+     */
+    boolean record(final short[] signature, final Outcome outcome) {
+        return insert(signature, outcome) != FULL;
+    }
+
+    /**
+     * Records the outcome of the canonical configuration with the given signature, unless one is already recorded.
+     *
+     * @return false if an outcome was already recorded for the configuration; true if it was recorded now, or if the
+     * table had no room left for it
+     */
+    boolean add(final short[] signature, final Outcome outcome) {
+        return insert(signature, outcome) != PRESENT;
+    }
+
+    private int insert(final short[] signature, final Outcome outcome) {
+        val first = fingerprint(signature, 0);
+        val second = fingerprint(signature, first) | 1;
+        val word = (first & ~OUTCOME_MASK) | (outcome.ordinal() + 1);
+
+        var slot = first & slotMask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            val chunk = chunks[(int) (slot >>> CHUNK_BITS)];
+            val offset = offsetOf(slot);
+            var current = (long) LONGS.getVolatile(chunk, offset);
+            if (current == 0) {
+                if (LONGS.compareAndSet(chunk, offset, 0L, word)) {
+                    LONGS.setVolatile(chunk, offset + Long.BYTES, second);
+                    return INSERTED;
+                }
+                current = (long) LONGS.getVolatile(chunk, offset);
+            }
+            if ((current & ~OUTCOME_MASK) == (first & ~OUTCOME_MASK) && awaitSecond(chunk, offset) == second) {
+                return PRESENT;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+        return FULL;
+    }
+
+    /**
+     * @return the second fingerprint of a claimed slot, waiting for the thread that claimed it to write it
+     */
+    private static long awaitSecond(final ByteBuffer chunk, final int offset) {
+        long second;
+        while ((second = (long) LONGS.getVolatile(chunk, offset + Long.BYTES)) == 0) {
+            Thread.onSpinWait();
+        }
+        return second;
+    }
+
+    private static int offsetOf(final long slot) {
+        return (int) (slot & ((1L << CHUNK_BITS) - 1)) * SLOT_BYTES;
+    }
+
+    /**
+     * SplitMix64 steps over the signature values, starting from <code>seed</code>.
+     */
+    static long fingerprint(final short[] signature, final long seed) {
+        var hash = seed ^ signature.length;
+        for (val value : signature) {
+            hash = mix(hash + (value & 0xFFFF) + 0x9E3779B97F4A7C15L);
+        }
+        return hash;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,150 @@
+package br.unb.cic.tdp.proof;
+
+import lombok.SneakyThrows;
+import lombok.val;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Streams the pages, compressed, into a zip archive in the output directory, instead of writing hundreds of thousands
+ * of small files. Each run writes a new archive, named after {@value #ARCHIVE_NAME}; the pages in the archives of the
+ * previous runs are kept and not written again. An archive left without its central directory by a crash is rewritten
+ * from its complete entries when the sink is opened.
+ * <p>
+ * The archived pages can be browsed with {@link ArchiveServer}.
+ */
+public final class ZipPageSink implements PageSink {
+
+    static final String ARCHIVE_NAME = "pages-%05d.zip";
+
+    private final Path root;
+    private final Set<String> names;
+    private final ZipOutputStream out;
+
+    private ZipPageSink(final Path root, final Set<String> names, final ZipOutputStream out) {
+        this.root = root;
+        this.names = names;
+        this.out = out;
+    }
+
+    @SneakyThrows
+    public static ZipPageSink open(final Path outputDir) {
+        val root = outputDir.toAbsolutePath().normalize();
+        val names = ConcurrentHashMap.<String>newKeySet();
+        val archives = archives(root);
+        for (val archive : archives) {
+            names.addAll(entries(archive));
+        }
+
+        val archive = root.resolve(String.format(ARCHIVE_NAME, archives.size()));
+        return new ZipPageSink(root, names, new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(archive), 1 << 16)));
+    }
+
+    /**
+     * @return the archives in the output directory, in the order they were written
+     */
+    static List<Path> archives(final Path root) {
+        val archives = new ArrayList<Path>();
+        for (int i = 0; Files.exists(root.resolve(String.format(ARCHIVE_NAME, i))); i++) {
+            archives.add(root.resolve(String.format(ARCHIVE_NAME, i)));
+        }
+        return archives;
+    }
+
+    @Override
+    public boolean exists(final Path page) {
+        return names.contains(nameOf(page));
+    }
+
+    /**
+     * Pages are written once: a page already archived is not replaced.
+     */
+    @SneakyThrows
+    @Override
+    public void write(final Path page, final String content) {
+        val name = nameOf(page);
+        if (!names.add(name)) {
+            return;
+        }
+
+        val bytes = content.getBytes(UTF_8);
+        synchronized (out) {
+            out.putNextEntry(new ZipEntry(name));
+            out.write(bytes);
+            out.closeEntry();
+        }
+    }
+
+    /**
+     * Pages are only durable once the archive is closed.
+     */
+    @Override
+    public boolean writesThrough() {
+        return false;
+    }
+
+    @SneakyThrows
+    @Override
+    public void close() {
+        synchronized (out) {
+            out.close();
+        }
+    }
+
+    private String nameOf(final Path page) {
+        return root.relativize(page.toAbsolutePath().normalize()).toString().replace(File.separatorChar, '/');
+    }
+
+    @SneakyThrows
+    private static List<String> entries(final Path archive) {
+        try (val zip = new ZipFile(archive.toFile())) {
+            return zip.stream().map(ZipEntry::getName).toList();
+        } catch (final ZipException e) {
+            System.out.println("Repairing " + archive);
+            return repair(archive);
+        }
+    }
+
+    /**
+     * Rewrites an archive from its local entries, dropping the entry cut short by the crash.
+     */
+    @SneakyThrows
+    private static List<String> repair(final Path archive) {
+        val repaired = archive.resolveSibling(archive.getFileName() + ".tmp");
+        val names = new ArrayList<String>();
+        try (val in = new ZipInputStream(new BufferedInputStream(Files.newInputStream(archive)));
+             val out = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(repaired)))) {
+            try {
+                ZipEntry entry;
+                while ((entry = in.getNextEntry()) != null) {
+                    val content = in.readAllBytes();
+                    out.putNextEntry(new ZipEntry(entry.getName()));
+                    out.write(content);
+                    out.closeEntry();
+                    names.add(entry.getName());
+                }
+            } catch (final IOException e) {
+                // the end of the archive was lost
+            }
+        }
+        Files.move(repaired, archive, REPLACE_EXISTING);
+        return names;
+    }
+}
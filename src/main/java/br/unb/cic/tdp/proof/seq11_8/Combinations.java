@@ -2,10 +2,11 @@ package br.unb.cic.tdp.proof.seq11_8;
 
 import br.unb.cic.tdp.base.Configuration;
 import br.unb.cic.tdp.permutation.MulticyclePermutation;
+import br.unb.cic.tdp.proof.BadCaseIndex;
+import br.unb.cic.tdp.proof.PageSink;
+import br.unb.cic.tdp.proof.SiblingFilter;
 import br.unb.cic.tdp.proof.SortOrExtend;
 import br.unb.cic.tdp.util.Pair;
-import cern.colt.list.FloatArrayList;
-import com.google.common.primitives.Floats;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.SneakyThrows;
@@ -13,15 +14,13 @@ import lombok.val;
 import org.apache.velocity.VelocityContext;
 import org.apache.velocity.app.Velocity;
 
-import java.io.File;
-import java.io.FileWriter;
+import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.RecursiveAction;
 
 import static br.unb.cic.tdp.proof.SortOrExtend.permutationToJsArray;
@@ -45,52 +44,78 @@ public class Combinations {
             new Configuration[]{ORIENTED_5_CYCLE, INTERLEAVING_PAIR, NECKLACE_SIZE_4,
                     TWISTED_NECKLACE_SIZE_4, NECKLACE_SIZE_5, NECKLACE_SIZE_6};
 
+    private static final int MAX_COMPONENT_SIZE = Arrays.stream(BAD_SMALL_COMPONENTS)
+            .mapToInt(component -> component.getPi().size()).max().getAsInt();
+
     @SneakyThrows
-    public static void generate(final String outputDir) {
+    public static void generate(final String outputDir, final PageSink sink) {
         Files.createDirectories(Paths.get(outputDir + "/comb/"));
-        Files.createDirectories(Paths.get(outputDir + "/comb/bad-cases/"));
 
         try (var pool = new ForkJoinPool()) {
-            for (val configuration : BAD_SMALL_COMPONENTS) {
-                pool.execute(new SortOrExtendCombinations(configuration, outputDir + "/comb/"));
+            val frontier = SortOrExtend.frontier(pool, outputDir + "/comb/", configuration -> new SortOrExtendCombinations(configuration, outputDir + "/comb/"));
+            if (!frontier.resume()) {
+                for (val configuration : BAD_SMALL_COMPONENTS) {
+                    frontier.submit(configuration);
+                }
             }
+            frontier.await();
         }
 
+        val badCaseIndex = BadCaseIndex.load(outputDir + "/comb/");
         try (var pool = new ForkJoinPool()) {
-            Arrays.stream(BAD_SMALL_COMPONENTS).forEach(c -> pool.execute(new MakeHtmlNavigation(c, outputDir)));
+            Arrays.stream(BAD_SMALL_COMPONENTS).forEach(c -> pool.execute(new MakeHtmlNavigation(c, outputDir, badCaseIndex, sink)));
         }
     }
 
     private static List<Pair<String, Configuration>> extend(final Configuration config) {
         val result = new ArrayList<Pair<String, Configuration>>();
+        forEachCombination(config, (badSmallComponent, i, combination, length) -> {
+            final String info;
+            if (badSmallComponent == ORIENTED_5_CYCLE)
+                info = "bad oriented 5-cycle";
+            else if (badSmallComponent == INTERLEAVING_PAIR)
+                info = "unoriented interleaving pair";
+            else if (badSmallComponent == NECKLACE_SIZE_4)
+                info = "unoriented necklace of size 4";
+            else if (badSmallComponent == TWISTED_NECKLACE_SIZE_4)
+                info = "unoriented twisted necklace of size 4";
+            else if (badSmallComponent == NECKLACE_SIZE_5)
+                info = "unoriented necklace of size 5";
+            else
+                info = "unoriented necklace of size 6";
+
+            result.add(new Pair<>("pos=" + i + " add " + info, Configuration.ofSignature(Arrays.copyOf(combination, length))));
+        });
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface CombinationConsumer {
+        void accept(Configuration badSmallComponent, int position, short[] combination, int length);
+    }
+
+    /**
+     * Passes to <code>consumer</code> the signature of each combination, in a buffer reused for the next one,
+     * along with the component inserted, its position and the length of the signature.
+     */
+    private static void forEachCombination(final Configuration config, final CombinationConsumer consumer) {
+        val signature = config.getSignature().getContent();
+        val buffer = new short[signature.length + MAX_COMPONENT_SIZE];
         for (val badSmallComponent : BAD_SMALL_COMPONENTS) {
+            // relabelled after the cycles of the configuration
+            val component = badSmallComponent.getSignature().getContent().clone();
+            for (int j = 0; j < component.length; j++) {
+                component[j] = Configuration.pack(Configuration.label(component[j]) + config.getSpi().size(),
+                        Configuration.rank(component[j]));
+            }
+
             for (int i = 0; i < config.getPi().size(); i++) {
-                val badSmallComponentSignature = badSmallComponent.getSignature().getContent().clone();
-                for (int j = 0; j < badSmallComponentSignature.length; j++) {
-                    badSmallComponentSignature[j] += config.getSpi().size();
-                }
-                val signature = new FloatArrayList(config.getSignature().getContent().clone());
-                signature.beforeInsertAllOf(i, Floats.asList(badSmallComponentSignature));
-                signature.trimToSize();
-
-                final String info;
-                if (badSmallComponent == ORIENTED_5_CYCLE)
-                    info = "bad oriented 5-cycle";
-                else if (badSmallComponent == INTERLEAVING_PAIR)
-                    info = "unoriented interleaving pair";
-                else if (badSmallComponent == NECKLACE_SIZE_4)
-                    info = "unoriented necklace of size 4";
-                else if (badSmallComponent == TWISTED_NECKLACE_SIZE_4)
-                    info = "unoriented twisted necklace of size 4";
-                else if (badSmallComponent == NECKLACE_SIZE_5)
-                    info = "unoriented necklace of size 5";
-                else
-                    info = "unoriented necklace of size 6";
-
-                result.add(new Pair<>("pos=" + i + " add " + info, Configuration.ofSignature(signature.elements())));
+                System.arraycopy(signature, 0, buffer, 0, i);
+                System.arraycopy(component, 0, buffer, i, component.length);
+                System.arraycopy(signature, i, buffer, i + component.length, signature.length - i);
+                consumer.accept(badSmallComponent, i, buffer, signature.length + component.length);
             }
         }
-        return result;
     }
 
     @Getter
@@ -110,15 +135,17 @@ public class Combinations {
     static class MakeHtmlNavigation extends RecursiveAction {
         final Configuration configuration;
         final String outputDir;
+        final BadCaseIndex badCaseIndex;
+        final PageSink sink;
 
         @SneakyThrows
         @Override
         protected void compute() {
-            val file = new File(outputDir + "/comb/" + configuration.getSpi() + ".html");
-            if (file.exists())
+            val page = Paths.get(outputDir, "comb", configuration.getSpi() + ".html");
+            if (sink.exists(page))
                 return;
 
-            val extensions = buildExtensionData(configuration, outputDir);
+            val extensions = buildExtensionData(configuration);
 
             val context = new VelocityContext();
             context.put("jsSpi", permutationToJsArray(configuration.getSpi()));
@@ -129,26 +156,23 @@ public class Combinations {
             context.put("extensions", extensions);
 
             val template = Velocity.getTemplate("templates/combinations.html");
-            try (val writer = new FileWriter(file)) {
-                template.merge(context, writer);
-            }
+            val writer = new StringWriter();
+            template.merge(context, writer);
+            sink.write(page, writer.toString());
 
             // fork tasks for bad extensions
             for (val extension : extend(configuration)) {
-                val canonical = extension.getSecond().getCanonical();
-                val badCaseFile = new File(outputDir + "/comb/bad-cases/" + canonical.getSpi());
-                if (badCaseFile.exists()) {
-                    new MakeHtmlNavigation(extension.getSecond(), outputDir).fork();
+                if (badCaseIndex.contains(extension.getSecond().getCanonical())) {
+                    new MakeHtmlNavigation(extension.getSecond(), outputDir, badCaseIndex, sink).fork();
                 }
             }
         }
 
-        private List<ExtensionData> buildExtensionData(final Configuration configuration, final String outputDir) {
+        private List<ExtensionData> buildExtensionData(final Configuration configuration) {
             val result = new ArrayList<ExtensionData>();
             for (val extension : extend(configuration)) {
                 val canonical = extension.getSecond().getCanonical();
-                val badCaseFile = new File(outputDir + "/comb/bad-cases/" + canonical.getSpi());
-                val hasSorting = !badCaseFile.exists();
+                val hasSorting = !badCaseIndex.contains(canonical);
 
                 result.add(new ExtensionData(
                         extension.getFirst(),
@@ -177,25 +201,9 @@ public class Combinations {
                 System.out.println("BAD: Combination does not allow (11/8): " + canonical.getSpi());
             }
 
-            extendCombinations(configuration).stream().map(extension -> new SortOrExtendCombinations(extension, outputDir)).forEach(ForkJoinTask::fork);
-        }
-
-        private List<Configuration> extendCombinations(final Configuration config) {
-            val result = new ArrayList<Configuration>();
-            for (val badSmallComponent : BAD_SMALL_COMPONENTS) {
-                for (int i = 0; i < config.getPi().size(); i++) {
-                    val badSmallComponentSignature = badSmallComponent.getSignature().getContent().clone();
-                    for (int j = 0; j < badSmallComponentSignature.length; j++) {
-                        badSmallComponentSignature[j] += config.getSpi().size();
-                    }
-                    val signature = new FloatArrayList(config.getSignature().getContent().clone());
-                    signature.beforeInsertAllOf(i, Floats.asList(badSmallComponentSignature));
-                    signature.trimToSize();
-
-                    result.add(Configuration.ofSignature(signature.elements()));
-                }
-            }
-            return result;
+            val siblings = new SiblingFilter();
+            forEachCombination(configuration, (badSmallComponent, i, combination, length) -> siblings.add(combination, length));
+            siblings.forEach(this::submit);
         }
     }
 }
@@ -3,10 +3,11 @@ package br.unb.cic.tdp.proof.seq11_8;
 import br.unb.cic.tdp.base.Configuration;
 import br.unb.cic.tdp.permutation.Cycle;
 import br.unb.cic.tdp.permutation.MulticyclePermutation;
+import br.unb.cic.tdp.proof.BadCaseIndex;
+import br.unb.cic.tdp.proof.PageSink;
+import br.unb.cic.tdp.proof.SiblingFilter;
 import br.unb.cic.tdp.proof.SortOrExtend;
 import br.unb.cic.tdp.util.Pair;
-import cern.colt.list.FloatArrayList;
-import com.google.common.base.Preconditions;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.SneakyThrows;
@@ -14,42 +15,51 @@ import lombok.val;
 import org.apache.velocity.VelocityContext;
 import org.apache.velocity.app.Velocity;
 
-import java.io.File;
-import java.io.FileWriter;
+import java.io.StringWriter;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.ForkJoinTask;
-import java.util.stream.Stream;
 
 import static br.unb.cic.tdp.base.CommonOperations.cycleIndex;
+import static br.unb.cic.tdp.base.Configuration.label;
 import static br.unb.cic.tdp.base.Configuration.ofSignature;
+import static br.unb.cic.tdp.base.Configuration.pack;
+import static br.unb.cic.tdp.base.Configuration.rank;
 import static br.unb.cic.tdp.base.Configuration.signature;
 import static br.unb.cic.tdp.proof.SortOrExtend.permutationToJsArray;
 
 public class Extensions {
 
     @SneakyThrows
-    public static void generate(final String outputDir) {
+    public static void generate(final String outputDir, final PageSink sink) {
         Files.createDirectories(Paths.get(outputDir + "/dfs/"));
-        Files.createDirectories(Paths.get(outputDir + "/dfs/bad-cases/"));
 
         try (var pool = new ForkJoinPool()) {
-            // oriented 5-cycle
-            pool.execute(new SortOrExtendExtensions(new Configuration(new MulticyclePermutation("(0,3,1,4,2)")), outputDir + "/dfs/"));
-            // interleaving pair
-            pool.execute(new SortOrExtendExtensions(new Configuration(new MulticyclePermutation("(0,4,2)(1,5,3)")), outputDir + "/dfs/"));
-            // intersecting pair
-            pool.execute(new SortOrExtendExtensions(new Configuration(new MulticyclePermutation("(0,3,1)(2,5,4)")), outputDir + "/dfs/"));
+            val frontier = SortOrExtend.frontier(pool, outputDir + "/dfs/", configuration -> new SortOrExtendExtensions(configuration, outputDir + "/dfs/"));
+            if (!frontier.resume()) {
+                // oriented 5-cycle
+                frontier.submit(new Configuration(new MulticyclePermutation("(0,3,1,4,2)")));
+                // interleaving pair
+                frontier.submit(new Configuration(new MulticyclePermutation("(0,4,2)(1,5,3)")));
+                // intersecting pair
+                frontier.submit(new Configuration(new MulticyclePermutation("(0,3,1)(2,5,4)")));
+            }
+            frontier.await();
         }
 
+        val badCaseIndex = BadCaseIndex.load(outputDir + "/dfs/");
+        val navigated = new BitSet(badCaseIndex.size());
         try (val executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors())) {
-            Files.list(Paths.get(outputDir + "/dfs/bad-cases/"))
-                    .map(Path::toFile)
-                    .forEach(file -> executor.submit(() -> makeHtmlNavigation(new Configuration(new MulticyclePermutation(file.getName())), outputDir)));
+            SortOrExtend.forEachBadCase(outputDir + "/dfs/", badCase -> {
+                // a bad case may be stored more than once
+                val index = badCaseIndex.indexOf(badCase);
+                if (!navigated.get(index)) {
+                    navigated.set(index);
+                    executor.submit(() -> makeHtmlNavigation(ofSignature(badCase), outputDir, badCaseIndex, sink));
+                }
+            });
         }
     }
 
@@ -66,14 +76,14 @@ public class Extensions {
         private final String linkTarget;
     }
 
-    private static List<ExtensionData> buildExtensionData(final List<Pair<String, Configuration>> extensions, final String outputDir) {
+    private static List<ExtensionData> buildExtensionData(final List<Pair<String, Configuration>> extensions,
+                                                          final BadCaseIndex badCaseIndex) {
         val result = new ArrayList<ExtensionData>();
         for (val extension : extensions) {
             val configuration = extension.getSecond();
             val canonical = extension.getSecond().getCanonical();
 
-            val badCaseFile = new File(outputDir + "/dfs/bad-cases/" + canonical.getSpi());
-            val hasSorting = !badCaseFile.exists();
+            val hasSorting = !badCaseIndex.contains(canonical);
 
             result.add(new ExtensionData(
                     extension.getFirst(),
@@ -89,58 +99,80 @@ public class Extensions {
         return result;
     }
 
+    /**
+     * Receives each extension generated, with the signature in a buffer that is reused for the next one.
+     */
+    @FunctionalInterface
+    private interface UnorientedExtensionConsumer {
+        void accept(int a, int b, int c, short[] extension);
+    }
+
+    @FunctionalInterface
+    private interface Type3ExtensionConsumer {
+        void accept(int a, int b, Cycle extendedCycle, boolean turnsOriented, short[] extension);
+    }
+
     /*
      * Type 1 extension.
      */
     private static List<Pair<String, Configuration>> type1Extensions(final Configuration config) {
         val result = new ArrayList<Pair<String, Configuration>>();
+        forEachType1Extension(config, (a, b, c, extension) -> result.add(new Pair<>(String.format("a=%d b=%d c=%d", a, b, c),
+                ofSignature(extension.clone()))));
+        return result;
+    }
 
+    private static void forEachType1Extension(final Configuration config, final UnorientedExtensionConsumer consumer) {
         val newCycleLabel = config.getSpi().size() + 1;
 
         val signature = signature(config.getSpi(), config.getPi());
+        val openGates = config.getOpenGates();
+        val extension = new short[signature.length + 3];
 
         for (int i = 0; i < signature.length; i++) {
-            if (config.getOpenGates().contains(i)) {
+            if (openGates.contains(i)) {
                 for (int b = 0; b < signature.length; b++) {
                     for (int c = b; c < signature.length; c++) {
                         if (!(i == b && b == c)) {
-                            result.add(new Pair<>(String.format("a=%d b=%d c=%d", i, b, c),
-                                    ofSignature(unorientedExtension(signature, newCycleLabel, i, b, c).elements())));
+                            unorientedExtension(signature, newCycleLabel, i, b, c, extension);
+                            consumer.accept(i, b, c, extension);
                         }
                     }
                 }
             }
         }
-
-        return result;
     }
 
     /*
      * Type 2 extension.
      */
     private static List<Pair<String, Configuration>> type2Extensions(final Configuration config) {
+        val result = new ArrayList<Pair<String, Configuration>>();
+        forEachType2Extension(config, (a, b, c, extension) -> result.add(new Pair<>(String.format("a=%d b=%d c=%d", a, b, c),
+                ofSignature(extension.clone()))));
+        return result;
+    }
+
+    private static void forEachType2Extension(final Configuration config, final UnorientedExtensionConsumer consumer) {
         if (!config.isFull()) {
-            return Collections.emptyList();
+            return;
         }
 
-        val result = new ArrayList<Pair<String, Configuration>>();
-
         val newCycleLabel = config.getSpi().size() + 1;
 
         val signature = signature(config.getSpi(), config.getPi());
+        val extension = new short[signature.length + 3];
 
         for (int a = 0; a < signature.length; a++) {
             for (int b = a; b < signature.length; b++) {
                 for (int c = b; c < signature.length; c++) {
                     if (!(a == b && b == c)) {
-                        result.add(new Pair<>(String.format("a=%d b=%d c=%d", a, b, c),
-                                ofSignature(unorientedExtension(signature, newCycleLabel, a, b, c).elements())));
+                        unorientedExtension(signature, newCycleLabel, a, b, c, extension);
+                        consumer.accept(a, b, c, extension);
                     }
                 }
             }
         }
-
-        return result;
     }
 
     /*
@@ -148,16 +180,22 @@ public class Extensions {
      */
     private static List<Pair<String, Configuration>> type3Extensions(final Configuration config) {
         val result = new ArrayList<Pair<String, Configuration>>();
+        forEachType3Extension(config, (a, b, extendedCycle, turnsOriented, extension) -> result.add(new Pair<>(
+                String.format("a=%d b=%d, extended cycle: %s%s", a, b, extendedCycle, turnsOriented ? ", turn oriented" : ""),
+                ofSignature(extension.clone()))));
+        return result;
+    }
 
+    private static void forEachType3Extension(final Configuration config, final Type3ExtensionConsumer consumer) {
         val signature = signature(config.getSpi(), config.getPi());
         val cyclesSizes = new HashMap<Integer, Integer>();
         val indexesByLabel = new HashMap<Integer, List<Integer>>();
         for (int i = 0; i < signature.length; i++) {
-            cyclesSizes.putIfAbsent((int) Math.floor(signature[i]), 0);
-            cyclesSizes.computeIfPresent((int) Math.floor(signature[i]), (k, v) -> v + 1);
-            indexesByLabel.computeIfAbsent((int) Math.floor(signature[i]), s -> new ArrayList<>());
+            cyclesSizes.putIfAbsent(label(signature[i]), 0);
+            cyclesSizes.computeIfPresent(label(signature[i]), (k, v) -> v + 1);
+            indexesByLabel.computeIfAbsent(label(signature[i]), s -> new ArrayList<>());
             int finalI = i;
-            indexesByLabel.computeIfPresent((int) Math.floor(signature[i]), (k, v) -> {
+            indexesByLabel.computeIfPresent(label(signature[i]), (k, v) -> {
                 v.add(finalI);
                 return v;
             });
@@ -167,42 +205,37 @@ public class Extensions {
         val cyclesByLabel = new HashMap<Integer, Cycle>();
         for (int i = 0; i < signature.length; i++) {
             final int _i = i;
-            cyclesByLabel.computeIfAbsent((int) Math.floor(signature[i]), k -> cycleIndex[config.getPi().get(_i)]);
+            cyclesByLabel.computeIfAbsent(label(signature[i]), k -> cycleIndex[config.getPi().get(_i)]);
         }
 
+        val extension = new short[signature.length + 2];
         for (int label = 1; label <= config.getSpi().size(); label++) {
             if (!isOriented(signature, label)) {
+                // the 3-cycle ranked from its maximum symbol, to be turned oriented
+                val rankedCycle = cyclesSizes.get(label) == 3
+                        ? cyclesByLabel.get(label).startingBy(cyclesByLabel.get(label).getMaxSymbol()) : null;
+                val ranks = new short[]{pack(label, 1), pack(label, 3), pack(label, 5), pack(label, 2), pack(label, 4)};
                 for (int a = 0; a < signature.length; a++) {
                     for (int b = a; b < signature.length; b++) {
-                        float[] extendedSignature = unorientedExtension(signature, label, a, b).elements();
-
-                        Configuration extension = ofSignature(extendedSignature);
-
                         if (remainsUnoriented(indexesByLabel.get(label), a, b)) {
-                            if (extension.getOpenGates().size() <= 2) {
-                                result.add(new Pair<>(String.format("a=%d b=%d, extended cycle: %s", a, b, cyclesByLabel.get(label)), extension));
-                            }
-                        } else if (cyclesSizes.get(label) == 3) {
-                            val extensionPrime = extend(cyclesByLabel, label, signature, a, b);
-                            val fractions = new float[]{0.01F, 0.03F, 0.05F, 0.02F, 0.04F};
-                            for (int i = 0; i < fractions.length; i++) {
-                                fractions[i] += label;
+                            unorientedExtension(signature, label, a, b, extension);
+                            if (ofSignature(extension).getOpenGates().size() <= 2) {
+                                consumer.accept(a, b, cyclesByLabel.get(label), false, extension);
                             }
+                        } else if (rankedCycle != null) {
+                            orientedExtension(signature, rankedCycle, label, a, b, extension);
 
-                            if (areSymbolsInCyclicOrder(extensionPrime, fractions)) { // otherwise, it accepts a 2-move
-                                result.add(new Pair<>(String.format("a=%d b=%d, extended cycle: %s, turn oriented", a, b,
-                                        cyclesByLabel.get(label)), Configuration.ofSignature(extensionPrime)));
+                            if (areSymbolsInCyclicOrder(extension, ranks)) { // otherwise, it accepts a 2-move
+                                consumer.accept(a, b, cyclesByLabel.get(label), true, extension);
                             }
                         }
                     }
                 }
             }
         }
-
-        return result;
     }
 
-    public static boolean areSymbolsInCyclicOrder(final float[] elements, final float[] other) {
+    public static boolean areSymbolsInCyclicOrder(final short[] elements, final short[] other) {
         int next = 0;
 
         outer:
@@ -210,7 +243,7 @@ public class Extensions {
             if (elements[i] == other[next]) {
                 for (int j = 0; j <= elements.length; j++) {
                     int index = (i + j) % elements.length;
-                    if (Math.floor(elements[index]) == Math.floor(other[next % other.length])) {
+                    if (label(elements[index]) == label(other[next % other.length])) {
                         if (elements[index] == other[next % other.length]) {
                             next++;
                             if (next > other.length) {
@@ -227,29 +260,24 @@ public class Extensions {
         return true;
     }
 
-    private static float[] extend(final Map<Integer, Cycle> cyclesByLabel, final int label, float[] signature,
-                                  final int a, final int b) {
-        final Cycle cycle = cyclesByLabel.get(label).startingBy(cyclesByLabel.get(label).getMaxSymbol());
-
-        float[] copiedsignature = new float[signature.length];
-        System.arraycopy(signature, 0, copiedsignature, 0, signature.length);
-
-        for (int i = cycle.getSymbols().length - 1; i >= 0; i--) {
-            copiedsignature[cycle.getSymbols()[i]] += 0.01 * (i + 1);
-        }
-
-        float next = 0.05f;
-        val positions = new int[]{a, b};
-        val extension = new FloatArrayList(copiedsignature);
-        int inserted = 0;
-        for (int position : positions) {
-            extension.beforeInsert(position + inserted, label + next);
-            next -= 0.01f;
-            inserted++;
+    /**
+     * Writes to <code>extension</code> the signature with the symbols of <code>rankedCycle</code> ranked in its order
+     * and two symbols of its cycle, ranked 5 and 4, inserted at the positions a and b (a <= b).
+     */
+    private static void orientedExtension(final short[] signature, final Cycle rankedCycle, final int label,
+                                          final int a, final int b, final short[] extension) {
+        System.arraycopy(signature, 0, extension, 0, a);
+        extension[a] = pack(label, 5);
+        System.arraycopy(signature, a, extension, a + 1, b - a);
+        extension[b + 1] = pack(label, 4);
+        System.arraycopy(signature, b, extension, b + 2, signature.length - b);
+
+        val symbols = rankedCycle.getSymbols();
+        for (int i = 0; i < symbols.length; i++) {
+            // pi is the identity, so the symbols are the positions in the signature
+            val symbol = symbols[i];
+            extension[symbol < a ? symbol : symbol < b ? symbol + 1 : symbol + 2] = pack(label, i + 1);
         }
-        extension.trimToSize();
-
-        return extension.elements();
     }
 
     private static boolean remainsUnoriented(final List<Integer> indexes, final int... newIndices) {
@@ -269,29 +297,51 @@ public class Extensions {
         return intervals.size() == 1;
     }
 
-    private static boolean isOriented(float[] signature, int label) {
-        for (float s : signature) {
-            if (s % 1 > 0 && Math.floor(s) == label) {
+    private static boolean isOriented(short[] signature, int label) {
+        for (short s : signature) {
+            if (rank(s) > 0 && label(s) == label) {
                 return true;
             }
         }
         return false;
     }
 
-    private static FloatArrayList unorientedExtension(final float[] signature, final int label, final int... positions) {
-        Preconditions.checkArgument(1 < positions.length && positions.length <= 3);
-        Arrays.sort(positions);
-        val extension = new FloatArrayList(signature);
-        for (int i = 0; i < positions.length; i++) {
-            extension.beforeInsert(positions[i] + i, label);
-        }
-        extension.trimToSize();
-        return extension;
+    /**
+     * Writes to <code>out</code> the signature with a new unoriented cycle, labelled <code>label</code>, whose symbols
+     * are inserted before the positions a, b and c of <code>signature</code>.
+     */
+    private static void unorientedExtension(final short[] signature, final int label, final int a, final int b,
+                                            final int c, final short[] out) {
+        val first = Math.min(a, Math.min(b, c));
+        val last = Math.max(a, Math.max(b, c));
+        val middle = a + b + c - first - last;
+        val value = pack(label, 0);
+        System.arraycopy(signature, 0, out, 0, first);
+        out[first] = value;
+        System.arraycopy(signature, first, out, first + 1, middle - first);
+        out[middle + 1] = value;
+        System.arraycopy(signature, middle, out, middle + 2, last - middle);
+        out[last + 2] = value;
+        System.arraycopy(signature, last, out, last + 3, signature.length - last);
+    }
+
+    /**
+     * Writes to <code>out</code> the signature with two symbols of the unoriented cycle labelled <code>label</code>
+     * inserted before the positions a and b of <code>signature</code>, where a &lt;= b.
+     */
+    private static void unorientedExtension(final short[] signature, final int label, final int a, final int b,
+                                            final short[] out) {
+        val value = pack(label, 0);
+        System.arraycopy(signature, 0, out, 0, a);
+        out[a] = value;
+        System.arraycopy(signature, a, out, a + 1, b - a);
+        out[b + 1] = value;
+        System.arraycopy(signature, b, out, b + 2, signature.length - b);
     }
 
     @SneakyThrows
-    private static void makeHtmlNavigation(final Configuration configuration, final String outputDir) {
-        val file = new File(outputDir + "/dfs/" + configuration.getSpi() + ".html");
+    private static void makeHtmlNavigation(final Configuration configuration, final String outputDir,
+                                           final BadCaseIndex badCaseIndex, final PageSink sink) {
 
         val context = new VelocityContext();
         context.put("jsSpi", permutationToJsArray(configuration.getSpi()));
@@ -300,14 +350,14 @@ public class Extensions {
         context.put("openGates", configuration.getOpenGates().toString());
         context.put("signature", configuration.getSignature().toString());
         context.put("threeNorm", configuration.getSpi().get3Norm());
-        context.put("type1Extensions", buildExtensionData(type1Extensions(configuration), outputDir));
-        context.put("type2Extensions", buildExtensionData(type2Extensions(configuration), outputDir));
-        context.put("type3Extensions", buildExtensionData(type3Extensions(configuration), outputDir));
+        context.put("type1Extensions", buildExtensionData(type1Extensions(configuration), badCaseIndex));
+        context.put("type2Extensions", buildExtensionData(type2Extensions(configuration), badCaseIndex));
+        context.put("type3Extensions", buildExtensionData(type3Extensions(configuration), badCaseIndex));
 
         val template = Velocity.getTemplate("templates/extensions.html");
-        try (val writer = new FileWriter(file)) {
-            template.merge(context, writer);
-        }
+        val writer = new StringWriter();
+        template.merge(context, writer);
+        sink.write(Paths.get(outputDir, "dfs", configuration.getSpi() + ".html"), writer.toString());
     }
 
     static class SortOrExtendExtensions extends SortOrExtend {
@@ -318,9 +368,11 @@ public class Extensions {
 
         @Override
         protected void extend(Configuration canonical) {
-            Stream.concat(Stream.concat(type1Extensions(canonical).stream(), type2Extensions(canonical).stream()), type3Extensions(canonical).stream())
-                    .map(extension -> new SortOrExtendExtensions(extension.getSecond(), outputDir)).
-                    forEach(ForkJoinTask::fork);
+            val siblings = new SiblingFilter();
+            forEachType1Extension(canonical, (a, b, c, extension) -> siblings.add(extension, extension.length));
+            forEachType2Extension(canonical, (a, b, c, extension) -> siblings.add(extension, extension.length));
+            forEachType3Extension(canonical, (a, b, extendedCycle, turnsOriented, extension) -> siblings.add(extension, extension.length));
+            siblings.forEach(this::submit);
         }
     }
 }
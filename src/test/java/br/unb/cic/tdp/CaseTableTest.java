@@ -0,0 +1,83 @@
+package br.unb.cic.tdp;
+
+import br.unb.cic.tdp.base.Configuration;
+import br.unb.cic.tdp.permutation.Cycle;
+import br.unb.cic.tdp.permutation.PermutationGroups;
+import br.unb.cic.tdp.util.Pair;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static br.unb.cic.tdp.base.CommonOperations.applyTranspositionOptimized;
+import static br.unb.cic.tdp.base.CommonOperations.areSymbolsInCyclicOrder;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaseTableTest {
+
+    @Test
+    void testMappedCaseTable(@TempDir final Path dir) throws Exception {
+        val sortings = loadSortings();
+        val file = dir.resolve("cases-3_2.bin");
+        MappedCaseTable.write(sortings.values(), file);
+        val table = MappedCaseTable.open(file);
+
+        assertTrue(table.size() > 0 && table.size() <= sortings.size());
+        assertLookups(table, sortings);
+    }
+
+    @Test
+    void testPerfectHashCaseTable() {
+        val sortings = loadSortings();
+        val table = PerfectHashCaseTable.of(sortings.values());
+
+        assertTrue(table.size() > 0 && table.size() <= sortings.size());
+        assertLookups(table, sortings);
+        assertFalse(PerfectHashCaseTable.of(List.of()).lookup(new Configuration("(0 1 2)")).isPresent());
+    }
+
+    private static Multimap<Integer, Pair<Configuration, List<Cycle>>> loadSortings() {
+        final Multimap<Integer, Pair<Configuration, List<Cycle>>> sortings = HashMultimap.create();
+        new Silvaetal().loadSortings("cases/cases-3,2.txt", sortings);
+        return sortings;
+    }
+
+    /**
+     * Every configuration equivalent to a case must be found, with a sorting as long as the stored one that is valid
+     * for the configuration.
+     */
+    private static void assertLookups(final CaseTable table, final Multimap<Integer, Pair<Configuration, List<Cycle>>> sortings) {
+        for (val pair : sortings.values()) {
+            pair.getFirst().getEquivalentSignatures().forEach(signature -> {
+                val config = Configuration.ofSignature(signature.getContent());
+                val sorting = table.lookup(config);
+                assertTrue(sorting.isPresent());
+                assertEquals(pair.getSecond().size(), sorting.get().size());
+                assertSorting(config, sorting.get(), gain(pair.getFirst(), pair.getSecond()));
+            });
+        }
+
+        assertFalse(table.lookup(new Configuration("(0 1 2)")).isPresent());
+    }
+
+    private static int gain(final Configuration config, final List<Cycle> sorting) {
+        var spi = config.getSpi();
+        for (val move : sorting) {
+            spi = PermutationGroups.computeProduct(spi, move.getInverse());
+        }
+        return spi.getNumberOfEvenCycles() - config.getSpi().getNumberOfEvenCycles();
+    }
+
+    private static void assertSorting(final Configuration config, final List<Cycle> sorting, final int gain) {
+        var pi = config.getPi();
+        for (val move : sorting) {
+            assertTrue(areSymbolsInCyclicOrder(pi, move.getSymbols()), "not a transposition of pi");
+            pi = applyTranspositionOptimized(pi, move);
+        }
+        assertEquals(gain, gain(config, sorting));
+    }
+}
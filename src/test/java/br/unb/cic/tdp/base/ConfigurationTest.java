@@ -1,5 +1,7 @@
 package br.unb.cic.tdp.base;
 
+import br.unb.cic.tdp.permutation.Cycle;
+import br.unb.cic.tdp.permutation.MulticyclePermutation;
 import lombok.val;
 import org.junit.jupiter.api.Test;
 
@@ -35,7 +37,7 @@ class ConfigurationTest {
         val signature = config.getSignature();
 
         float[] expectedSignature = {1.0f, 2.01f, 2.03f, 2.05f, 3.0f, 2.02f, 2.04f, 1.0f, 3.0f, 1.0f, 3.0f};
-        assertArrayEquals(expectedSignature, signature.getContent(), 0.0001f);
+        assertArrayEquals(expectedSignature, decimal(signature.getContent()), 0.0001f);
         assertFalse(signature.isMirror());
     }
 
@@ -44,21 +46,21 @@ class ConfigurationTest {
         val config = new Configuration("(0 9 7)(1 5 2 6 3)(4 10 8)");
         val canonical = config.getCanonical();
 
-        float[] expectedCanonicalSignature = {1.0f, 2.01f, 2.03f, 2.05f, 3.0f, 2.02f, 2.04f, 1.0f, 3.0f, 1.0f, 3.0f};
-        assertArrayEquals(expectedCanonicalSignature, canonical.getSignature().getContent(), 0.0001f);
+        float[] expectedCanonicalSignature = {1.0f, 2.0f, 1.0f, 2.0f, 1.0f, 3.01f, 3.03f, 2.0f, 3.05f, 3.02f, 3.04f};
+        assertArrayEquals(expectedCanonicalSignature, decimal(canonical.getSignature().getContent()), 0.0001f);
     }
 
     @Test
     void testConfig1_HashCode() {
         val config = new Configuration("(0 9 7)(1 5 2 6 3)(4 10 8)");
-        assertEquals(-2127296534, config.hashCode());
+        assertEquals(-709341865, config.hashCode());
     }
 
     @Test
     void testConfig1_EquivalentSignatures() {
         val config = new Configuration("(0 9 7)(1 5 2 6 3)(4 10 8)");
         val equivalentSignatures = config.getEquivalentSignatures()
-                .map(sig -> Arrays.toString(sig.getContent()))
+                .map(sig -> Arrays.toString(decimal(sig.getContent())))
                 .collect(Collectors.toList());
 
         val expectedSignatures = Arrays.asList(
@@ -116,7 +118,7 @@ class ConfigurationTest {
         val signature = config.getSignature();
 
         float[] expectedSignature = {1.0f, 2.0f, 1.0f, 3.0f, 2.0f, 3.0f, 2.0f, 3.0f, 1.0f};
-        assertArrayEquals(expectedSignature, signature.getContent(), 0.0001f);
+        assertArrayEquals(expectedSignature, decimal(signature.getContent()), 0.0001f);
         assertFalse(signature.isMirror());
     }
 
@@ -125,21 +127,21 @@ class ConfigurationTest {
         val config = new Configuration("(0 8 2)(1 6 4)(3 7 5)");
         val canonical = config.getCanonical();
 
-        float[] expectedCanonicalSignature = {1.0f, 2.0f, 1.0f, 3.0f, 2.0f, 3.0f, 2.0f, 3.0f, 1.0f};
-        assertArrayEquals(expectedCanonicalSignature, canonical.getSignature().getContent(), 0.0001f);
+        float[] expectedCanonicalSignature = {1.0f, 1.0f, 2.0f, 1.0f, 3.0f, 2.0f, 3.0f, 2.0f, 3.0f};
+        assertArrayEquals(expectedCanonicalSignature, decimal(canonical.getSignature().getContent()), 0.0001f);
     }
 
     @Test
     void testConfig2_HashCode() {
         val config = new Configuration("(0 8 2)(1 6 4)(3 7 5)");
-        assertEquals(-2052909137, config.hashCode());
+        assertEquals(-230148761, config.hashCode());
     }
 
     @Test
     void testConfig2_EquivalentSignatures() {
         val config = new Configuration("(0 8 2)(1 6 4)(3 7 5)");
         val equivalentSignatures = config.getEquivalentSignatures()
-                .map(sig -> Arrays.toString(sig.getContent()))
+                .map(sig -> Arrays.toString(decimal(sig.getContent())))
                 .collect(Collectors.toList());
 
         val expectedSignatures = Arrays.asList(
@@ -193,7 +195,7 @@ class ConfigurationTest {
         val signature = config.getSignature();
 
         float[] expectedSignature = {1.01f, 1.03f, 2.0f, 1.05f, 2.0f, 1.02f, 3.0f, 3.0f, 2.0f, 2.0f, 3.0f, 1.04f, 2.0f};
-        assertArrayEquals(expectedSignature, signature.getContent(), 0.0001f);
+        assertArrayEquals(expectedSignature, decimal(signature.getContent()), 0.0001f);
         assertFalse(signature.isMirror());
     }
 
@@ -202,21 +204,21 @@ class ConfigurationTest {
         val config = new Configuration("(0 5 1 11 3)(2 12 9 8 4)(6 10 7)");
         val canonical = config.getCanonical();
 
-        float[] expectedCanonicalSignature = {1.01f, 1.03f, 2.0f, 1.05f, 2.0f, 1.02f, 3.0f, 3.0f, 2.0f, 2.0f, 3.0f, 1.04f, 2.0f};
-        assertArrayEquals(expectedCanonicalSignature, canonical.getSignature().getContent(), 0.0001f);
+        float[] expectedCanonicalSignature = {1.0f, 1.0f, 2.0f, 2.0f, 1.0f, 3.01f, 2.0f, 3.03f, 3.05f, 2.0f, 3.02f, 2.0f, 3.04f};
+        assertArrayEquals(expectedCanonicalSignature, decimal(canonical.getSignature().getContent()), 0.0001f);
     }
 
     @Test
     void testConfig3_HashCode() {
         val config = new Configuration("(0 5 1 11 3)(2 12 9 8 4)(6 10 7)");
-        assertEquals(-2018071758, config.hashCode());
+        assertEquals(-996021113, config.hashCode());
     }
 
     @Test
     void testConfig3_EquivalentSignatures() {
         val config = new Configuration("(0 5 1 11 3)(2 12 9 8 4)(6 10 7)");
         val equivalentSignatures = config.getEquivalentSignatures()
-                .map(sig -> Arrays.toString(sig.getContent()))
+                .map(sig -> Arrays.toString(decimal(sig.getContent())))
                 .collect(Collectors.toList());
 
         val expectedSignatures = Arrays.asList(
@@ -292,7 +294,7 @@ class ConfigurationTest {
             val signature = original.getSignature().getContent();
             val reconstructed = Configuration.ofSignature(signature);
 
-            assertArrayEquals(signature, reconstructed.getSignature().getContent(), 0.0001f,
+            assertArrayEquals(signature, reconstructed.getSignature().getContent(),
                     "Round-trip failed for: " + input);
         }
     }
@@ -313,4 +315,97 @@ class ConfigurationTest {
             assertSame(canonical1, canonical2, "getCanonical should return the same instance (cached)");
         }
     }
+
+    @Test
+    void testEquivalentConfigurationsShareTheCanonical() {
+        String[] inputs = {
+            "(0 9 7)(1 5 2 6 3)(4 10 8)",
+            "(0 8 2)(1 6 4)(3 7 5)",
+            "(0 5 1 11 3)(2 12 9 8 4)(6 10 7)"
+        };
+
+        for (String input : inputs) {
+            val config = new Configuration(input);
+            config.getEquivalentSignatures().forEach(signature -> {
+                val equivalent = Configuration.ofSignature(signature.getContent());
+                assertArrayEquals(config.getCanonical().getSignature().getContent(),
+                        equivalent.getCanonical().getSignature().getContent());
+                assertEquals(config.hashCode(), equivalent.hashCode());
+            });
+        }
+    }
+
+    @Test
+    void testCanonicalCache() {
+        CanonicalCache.enable(2);
+        try {
+            val config = new Configuration("(0 9 7)(1 5 2 6 3)(4 10 8)");
+            val canonical = config.getCanonical();
+            assertSame(canonical, canonical.getCanonical());
+            assertArrayEquals(canonical.getSignature().getContent(),
+                    new Configuration("(0 9 7)(1 5 2 6 3)(4 10 8)").getCanonical().getSignature().getContent());
+            assertEquals(1, CanonicalCache.stats().hitCount());
+            assertEquals(1, CanonicalCache.stats().missCount());
+
+            new Configuration("(0 8 2)(1 6 4)(3 7 5)").getCanonical();
+            new Configuration("(0 5 1 11 3)(2 12 9 8 4)(6 10 7)").getCanonical();
+            assertEquals(1, CanonicalCache.stats().evictionCount());
+        } finally {
+            CanonicalCache.disable();
+        }
+    }
+
+    @Test
+    void testCanonicalSignatureWithoutConfiguration() {
+        for (val spi : List.of("(0 9 7)(1 5 2 6 3)(4 10 8)", "(0 3 1 4 2)", "(0 7 5)(1 11 9)(2 6 4)(3 10 8)",
+                "(0 5 1 11 3)(2 12 9 8 4)(6 10 7)")) {
+            val config = new Configuration(spi);
+            val expected = config.getCanonical().getSignature().getContent();
+
+            config.getEquivalentSignatures().forEach(signature -> {
+                val buffer = Arrays.copyOf(signature.getContent(), signature.getContent().length + 3);
+                assertArrayEquals(expected, Configuration.canonicalSignature(buffer, signature.getContent().length), spi);
+            });
+
+            val known = Configuration.ofSignature(config.getSignature().getContent(), expected);
+            assertEquals(config.getSpi(), known.getSpi());
+            assertArrayEquals(expected, known.getCanonical().getSignature().getContent());
+            assertSame(known.getCanonical(), known.getCanonical().getCanonical());
+        }
+    }
+
+    @Test
+    void testPackedValuesOrderByLabelThenRank() {
+        assertTrue(Short.compareUnsigned(Configuration.pack(1, 0), Configuration.pack(1, 1)) < 0);
+        assertTrue(Short.compareUnsigned(Configuration.pack(1, 255), Configuration.pack(2, 0)) < 0);
+        assertTrue(Short.compareUnsigned(Configuration.pack(127, 0), Configuration.pack(255, 255)) < 0);
+        assertEquals(255, Configuration.label(Configuration.pack(255, 7)));
+        assertEquals(7, Configuration.rank(Configuration.pack(255, 7)));
+        assertThrows(IllegalArgumentException.class, () -> Configuration.pack(256, 0));
+    }
+
+    @Test
+    void testOrientedCycleLongerThan100Symbols() {
+        // a single oriented cycle of 101 symbols: 0 2 4 ... 100 1 3 ... 99
+        val symbols = new int[101];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = i <= 50 ? i * 2 : (i - 51) * 2 + 1;
+        }
+        val config = new Configuration(new MulticyclePermutation(List.of(Cycle.of(symbols))));
+
+        assertEquals(101, Configuration.rank(config.getSignature().getContent()[99]));
+        assertEquals(config.getSpi(), Configuration.ofSignature(config.getSignature().getContent()).getSpi());
+        assertEquals(config.hashCode(), Configuration.ofSignature(config.getCanonical().getSignature().getContent()).hashCode());
+    }
+
+    /**
+     * Decodes packed signature values as label + rank / 100.
+     */
+    private static float[] decimal(final short[] signature) {
+        val values = new float[signature.length];
+        for (int i = 0; i < signature.length; i++) {
+            values[i] = Configuration.label(signature[i]) + (float) Configuration.rank(signature[i]) / 100;
+        }
+        return values;
+    }
 }
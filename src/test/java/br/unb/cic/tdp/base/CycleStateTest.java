@@ -0,0 +1,119 @@
+package br.unb.cic.tdp.base;
+
+import br.unb.cic.tdp.permutation.OneLinePermutation;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CycleStateTest {
+
+    @Test
+    void testDynamicCycleState() {
+        assertDeltaMatchesAppliedMove(DynamicCycleState::new, 3, 15);
+        assertDeltaMatchesAppliedMove(DynamicCycleState::new, 65, 70);
+    }
+
+    @Test
+    void testBitCycleState() {
+        assertDeltaMatchesAppliedMove(BitCycleState::new, 3, 15);
+        assertDeltaMatchesAppliedMove(BitCycleState::new, 60, 64);
+    }
+
+    @Test
+    void testFactory() {
+        assertTrue(CycleState.of(new OneLinePermutation(randomOneLine(new Random(1), 64))) instanceof BitCycleState);
+        assertTrue(CycleState.of(new OneLinePermutation(randomOneLine(new Random(1), 65))) instanceof DynamicCycleState);
+    }
+
+    @Test
+    void testStatesAgreeAlongSequences() {
+        val random = new Random(1375);
+        for (int round = 0; round < 20; round++) {
+            val n = 3 + random.nextInt(40);
+            val oneLine = randomOneLine(random, n);
+            val dynamic = new DynamicCycleState(new OneLinePermutation(oneLine.clone()));
+            val bit = new BitCycleState(new OneLinePermutation(oneLine.clone()));
+
+            val moves = new int[10][];
+            for (int m = 0; m < moves.length; m++) {
+                moves[m] = randomMove(random, n);
+                dynamic.applyMove(moves[m][0], moves[m][1], moves[m][2]);
+                bit.applyMove(moves[m][0], moves[m][1], moves[m][2]);
+                assertArrayEquals(dynamic.oneLine, bit.oneLine);
+                assertEquals(dynamic.evenCycles, bit.evenCycles);
+                assertEquals(dynamic.hash, bit.hash);
+            }
+            for (int m = moves.length - 1; m >= 0; m--) {
+                dynamic.undoMove(moves[m][0], moves[m][1], moves[m][2]);
+                bit.undoMove(moves[m][0], moves[m][1], moves[m][2]);
+                assertEquals(dynamic.evenCycles, bit.evenCycles);
+            }
+            assertArrayEquals(oneLine, bit.oneLine);
+        }
+    }
+
+    private static void assertDeltaMatchesAppliedMove(final Function<OneLinePermutation, CycleState> factory,
+                                                      final int minSymbols, final int maxSymbols) {
+        val random = new Random(1375);
+        for (int round = 0; round < 20; round++) {
+            val n = minSymbols + random.nextInt(maxSymbols - minSymbols + 1);
+            val oneLine = randomOneLine(random, n);
+            val state = factory.apply(new OneLinePermutation(oneLine));
+
+            for (int t = 0; t < 500; t++) {
+                val move = randomMove(random, n);
+                val before = state.evenCycles;
+                val delta = state.delta(move[0], move[1], move[2]);
+                state.applyMove(move[0], move[1], move[2]);
+                assertEquals(state.evenCycles - before, delta);
+                assertEquals(countEvenCycles(oneLine), state.evenCycles);
+
+                // keep half of the moves to reach varied cycle structures
+                if (random.nextBoolean()) {
+                    state.undoMove(move[0], move[1], move[2]);
+                    assertEquals(before, state.evenCycles);
+                }
+            }
+        }
+    }
+
+    // OneLinePermutation.countEvenCycles is limited to 64 symbols
+    private static int countEvenCycles(final byte[] oneLine) {
+        val visited = new boolean[oneLine.length];
+        var count = 0;
+        for (int s = 0; s < oneLine.length; s++) {
+            var size = 0;
+            for (int cur = s; !visited[cur]; cur = oneLine[cur] & 0xFF) {
+                visited[cur] = true;
+                size++;
+            }
+            if (size % 2 == 1) count++;
+        }
+        return count;
+    }
+
+    private static byte[] randomOneLine(final Random random, final int n) {
+        val oneLine = new byte[n];
+        for (int s = 0; s < n; s++) oneLine[s] = (byte) s;
+        for (int s = n - 1; s > 0; s--) {
+            val r = random.nextInt(s + 1);
+            val t = oneLine[s];
+            oneLine[s] = oneLine[r];
+            oneLine[r] = t;
+        }
+        return oneLine;
+    }
+
+    private static int[] randomMove(final Random random, final int n) {
+        val a = random.nextInt(n);
+        var b = random.nextInt(n - 1);
+        if (b >= a) b++;
+        var c = random.nextInt(n);
+        while (c == a || c == b) c = random.nextInt(n);
+        return new int[]{a, b, c};
+    }
+}
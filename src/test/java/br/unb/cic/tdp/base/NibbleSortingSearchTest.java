@@ -0,0 +1,84 @@
+package br.unb.cic.tdp.base;
+
+import br.unb.cic.tdp.permutation.MulticyclePermutation;
+import br.unb.cic.tdp.permutation.OneLinePermutation;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static br.unb.cic.tdp.permutation.MulticyclePermutation.CANONICAL_PI_BYTE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class NibbleSortingSearchTest {
+
+    private static final float MIN_RATE = 2 / 1.375F;
+
+    @Test
+    void testTranspose() {
+        val random = new Random(1375);
+        for (int round = 0; round < 100; round++) {
+            val n = 3 + random.nextInt(NibbleSortingSearch.MAX_SYMBOLS - 2);
+            val pi = CANONICAL_PI_BYTE[n].clone();
+            val i = random.nextInt(n - 2);
+            val j = i + 1 + random.nextInt(n - i - 2);
+            val k = j + 1 + random.nextInt(n - j - 1);
+
+            val expected = new byte[n];
+            System.arraycopy(pi, 0, expected, 0, i);
+            System.arraycopy(pi, j, expected, i, k - j);
+            System.arraycopy(pi, i, expected, i + (k - j), j - i);
+            System.arraycopy(pi, k, expected, k, n - k);
+
+            assertEquals(NibbleSortingSearch.pack(expected), NibbleSortingSearch.transpose(NibbleSortingSearch.pack(pi), i, j, k));
+        }
+    }
+
+    @Test
+    void testSameSortingsAsSortingSearch() {
+        for (val cycles : new String[]{"(0 4 2)(1 5 3)", "(0 3 1)(2 5 4)", "(0 9 7)(1 5 2 6 3)(4 10 8)",
+                "(0 10 2)(1 5 3)(4 8 6)(7 11 9)", "(0 6 4)(1 9 7)(2 12 10)(3 15 13)(5 8 14)(11)"}) {
+            val spi = new MulticyclePermutation(cycles);
+            for (val fullSorting : new boolean[]{true, false}) {
+                for (val minRate : new float[]{1F, MIN_RATE}) {
+                    assertSameSortings(spi, minRate, 6, fullSorting);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testWithTranspositionTable() {
+        val spi = new MulticyclePermutation("(0 9 7)(1 5 2 6 3)(4 10 8)");
+        val oneLine = spi.getOneLineNotation();
+        val pi = CANONICAL_PI_BYTE[oneLine.length];
+
+        val expected = SortingSearch.searchForSortingSeq(pi.clone(), new OneLinePermutation(oneLine.clone()),
+                spi.getNumberOfEvenCycles(), MIN_RATE, 8, false);
+        val moves = NibbleSortingSearch.searchForSortingSeq(pi, new OneLinePermutation(oneLine),
+                spi.getNumberOfEvenCycles(), MIN_RATE, 8, false, new TranspositionTable(1024 * 1024));
+        assertSameMoves(expected, moves);
+    }
+
+    private static void assertSameSortings(final MulticyclePermutation spi, final float minRate, final int maxMoves,
+                                           final boolean fullSorting) {
+        val oneLine = spi.getOneLineNotation();
+        val pi = CANONICAL_PI_BYTE[oneLine.length];
+
+        val expected = SortingSearch.searchForSortingSeq(pi.clone(), new OneLinePermutation(oneLine.clone()),
+                spi.getNumberOfEvenCycles(), minRate, maxMoves, fullSorting);
+        val moves = NibbleSortingSearch.searchForSortingSeq(pi, new OneLinePermutation(oneLine),
+                spi.getNumberOfEvenCycles(), minRate, maxMoves, fullSorting);
+
+        assertSameMoves(expected, moves);
+        assertArrayEquals(spi.getOneLineNotation(), oneLine);
+    }
+
+    private static void assertSameMoves(final List<int[]> expected, final List<int[]> moves) {
+        assertEquals(expected.size(), moves.size());
+        for (int m = 0; m < expected.size(); m++) {
+            assertArrayEquals(expected.get(m), moves.get(m));
+        }
+    }
+}
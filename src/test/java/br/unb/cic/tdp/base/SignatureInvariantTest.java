@@ -0,0 +1,31 @@
+package br.unb.cic.tdp.base;
+
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignatureInvariantTest {
+
+    @Test
+    void testEquivalentSignaturesShareTheInvariant() {
+        for (val spi : List.of("(0 9 7)(1 5 2 6 3)(4 10 8)", "(0 3 1 4 2)", "(0 10 2)(1 5 3)(4 8 6)(7 11 9)",
+                "(0 7 5)(1 11 9)(2 6 4)(3 10 8)", "(0 16 2)(1 5 3)(4 8 6)(7 11 9)(10 14 12)(13 17 15)")) {
+            val configuration = new Configuration(spi);
+            val invariant = SignatureInvariant.of(configuration.getSignature().getContent());
+            configuration.getEquivalentSignatures().forEach(signature ->
+                    assertEquals(invariant, SignatureInvariant.of(signature.getContent()), spi));
+        }
+    }
+
+    @Test
+    void testInterleavingSeparatesConfigurations() {
+        val interleaving = new Configuration("(0 4 2)(1 5 3)");
+        val intersecting = new Configuration("(0 3 1)(2 5 4)");
+
+        assertNotEquals(SignatureInvariant.of(interleaving.getSignature().getContent()),
+                SignatureInvariant.of(intersecting.getSignature().getContent()));
+    }
+}
@@ -0,0 +1,147 @@
+package br.unb.cic.tdp.base;
+
+import br.unb.cic.tdp.permutation.MulticyclePermutation;
+import br.unb.cic.tdp.permutation.OneLinePermutation;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static br.unb.cic.tdp.permutation.MulticyclePermutation.CANONICAL_PI_BYTE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortingSearchTest {
+
+    private static final float MIN_RATE = 2 / 1.375F;
+
+    @Test
+    void testFullSortingInterleavingPair() {
+        val spi = new MulticyclePermutation("(0 4 2)(1 5 3)");
+        val moves = search(new CPUSortingSearch(1), spi, 1F, 3, true);
+
+        assertEquals(3, moves.size());
+        assertSorting(spi, moves, 1F, true);
+    }
+
+    @Test
+    void testNoSortingForBadSmallComponent() {
+        val spi = new MulticyclePermutation("(0 4 2)(1 5 3)");
+        assertTrue(search(new CPUSortingSearch(1), spi, MIN_RATE, 4, true).isEmpty());
+    }
+
+    @Test
+    void testPartialSorting() {
+        val spi = new MulticyclePermutation("(0 9 7)(1 5 2 6 3)(4 10 8)");
+        val moves = search(new CPUSortingSearch(1), spi, MIN_RATE, 8, false);
+
+        assertFalse(moves.isEmpty());
+        assertSorting(spi, moves, MIN_RATE, false);
+    }
+
+    @Test
+    void testInputIsNotModified() {
+        val spi = new MulticyclePermutation("(0 3 1)(2 5 4)");
+        val oneLine = spi.getOneLineNotation().clone();
+        val pi = CANONICAL_PI_BYTE[spi.getNumberOfSymbols()].clone();
+
+        search(new CPUSortingSearch(1), spi, 1F, 4, true);
+
+        assertArrayEquals(oneLine, spi.getOneLineNotation());
+        assertArrayEquals(pi, CANONICAL_PI_BYTE[spi.getNumberOfSymbols()]);
+    }
+
+    @Test
+    void testDeterministicParallelSearchMatchesSequential() {
+        for (val cycles : new String[]{"(0 4 2)(1 5 3)", "(0 9 7)(1 5 2 6 3)(4 10 8)", "(0 3 1)(2 5 4)"}) {
+            val spi = new MulticyclePermutation(cycles);
+            for (val fullSorting : new boolean[]{true, false}) {
+                val sequential = search(new CPUSortingSearch(1), spi, MIN_RATE, 8, fullSorting);
+                for (int splitDepth = 1; splitDepth <= 2; splitDepth++) {
+                    val parallel = search(new CPUSortingSearch(1, CPUSortingSearch.DEFAULT_TABLE_BYTES, splitDepth, true),
+                            spi, MIN_RATE, 8, fullSorting);
+                    assertEquals(sequential.size(), parallel.size());
+                    for (int m = 0; m < sequential.size(); m++) {
+                        assertArrayEquals(sequential.get(m), parallel.get(m));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testNonDeterministicParallelSearch() {
+        val spi = new MulticyclePermutation("(0 9 7)(1 5 2 6 3)(4 10 8)");
+        val moves = search(new CPUSortingSearch(1, CPUSortingSearch.DEFAULT_TABLE_BYTES, 2, false), spi, MIN_RATE, 8, false);
+
+        assertFalse(moves.isEmpty());
+        assertSorting(spi, moves, MIN_RATE, false);
+    }
+
+    @Test
+    void testSearchDeepening() {
+        for (val cycles : new String[]{"(0 9 7)(1 5 2 6 3)(4 10 8)", "(0 10 2)(1 5 3)(4 8 6)(7 11 9)",
+                "(0 6 4)(1 9 7)(2 12 10)(3 15 13)(5 8 14)(11)(16 19 17)(18 21 20)"}) {
+            val spi = new MulticyclePermutation(cycles);
+            // without carrying the transposition table over
+            var expected = List.<int[]>of();
+            for (val bound : new int[]{2, 4, 8}) {
+                if (expected.isEmpty()) {
+                    expected = search(new CPUSortingSearch(1), spi, MIN_RATE, bound, false);
+                }
+            }
+
+            val moves = new CPUSortingSearch(1).searchDeepening(CANONICAL_PI_BYTE[spi.getNumberOfSymbols()],
+                    new OneLinePermutation(spi.getOneLineNotation()), spi.getNumberOfEvenCycles(), MIN_RATE,
+                    new int[]{2, 4, 8}, false);
+            assertEquals(expected.size(), moves.size());
+            for (int m = 0; m < moves.size(); m++) {
+                assertArrayEquals(expected.get(m), moves.get(m));
+            }
+        }
+    }
+
+    static List<int[]> search(final SortingBackend backend, final MulticyclePermutation spi,
+                              final float minRate, final int maxMoves, final boolean fullSorting) {
+        return backend.search(CANONICAL_PI_BYTE[spi.getNumberOfSymbols()], new OneLinePermutation(spi.getOneLineNotation()),
+                spi.getNumberOfEvenCycles(), minRate, maxMoves, fullSorting);
+    }
+
+    /**
+     * Replays the moves checking that each one is a transposition of the current pi and that the sequence reaches
+     * <code>minRate</code>.
+     */
+    static void assertSorting(final MulticyclePermutation spi, final List<int[]> moves,
+                              final float minRate, final boolean fullSorting) {
+        val oneLine = spi.getOneLineNotation().clone();
+        val pi = CANONICAL_PI_BYTE[oneLine.length].clone();
+
+        for (val move : moves) {
+            val i = indexOf(pi, move[0]);
+            val j = indexOf(pi, move[1]);
+            val k = indexOf(pi, move[2]);
+            assertTrue(i < j && j < k, "not a transposition of pi");
+
+            val av = oneLine[move[0]];
+            oneLine[move[0]] = oneLine[move[2]];
+            oneLine[move[2]] = oneLine[move[1]];
+            oneLine[move[1]] = av;
+
+            val temp = pi.clone();
+            System.arraycopy(temp, j, pi, i, k - j);
+            System.arraycopy(temp, i, pi, i + (k - j), j - i);
+        }
+
+        val evenCycles = new OneLinePermutation(oneLine).countEvenCycles();
+        if (fullSorting) {
+            assertEquals(oneLine.length, evenCycles);
+        }
+        assertTrue((evenCycles - spi.getNumberOfEvenCycles()) / (float) moves.size() >= minRate);
+    }
+
+    private static int indexOf(final byte[] pi, final int symbol) {
+        for (int i = 0; i < pi.length; i++) {
+            if ((pi[i] & 0xFF) == symbol) return i;
+        }
+        return -1;
+    }
+}
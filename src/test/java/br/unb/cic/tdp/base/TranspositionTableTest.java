@@ -0,0 +1,100 @@
+package br.unb.cic.tdp.base;
+
+import br.unb.cic.tdp.permutation.MulticyclePermutation;
+import br.unb.cic.tdp.permutation.OneLinePermutation;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TranspositionTableTest {
+
+    @Test
+    void testFailureIsKeptForSmallerBudgets() {
+        val table = new TranspositionTable(1024);
+        table.recordFailure(42L, 0, 5);
+
+        assertTrue(table.hasFailed(42L, 0, 5));
+        assertTrue(table.hasFailed(42L, 0, 3));
+        assertFalse(table.hasFailed(42L, 0, 6));
+        assertFalse(table.hasFailed(43L, 0, 1));
+    }
+
+    @Test
+    void testFailureIsKeptForDeeperStates() {
+        val table = new TranspositionTable(1024);
+        table.recordFailure(42L, 3, 5);
+
+        assertTrue(table.hasFailed(42L, 3, 5));
+        assertTrue(table.hasFailed(42L, 6, 2));
+        assertFalse(table.hasFailed(42L, 2, 5));
+        assertFalse(table.hasFailed(42L, 4, 6));
+
+        // a failure that is not covered replaces the old one
+        table.recordFailure(42L, 2, 5);
+        assertTrue(table.hasFailed(42L, 2, 5));
+    }
+
+    @Test
+    void testClear() {
+        val table = new TranspositionTable(1024);
+        table.recordFailure(42L, 0, 5);
+        table.clear();
+
+        assertFalse(table.hasFailed(42L, 0, 1));
+    }
+
+    @Test
+    void testSmallBudgetsAreNotRecorded() {
+        val table = new TranspositionTable(1024);
+        table.recordFailure(42L, 0, 1);
+
+        assertFalse(table.hasFailed(42L, 0, 1));
+    }
+
+    @Test
+    void testShallowFailuresDoNotEvictDeepOnes() {
+        // a single bucket
+        val table = new TranspositionTable(0);
+        for (long key = 0; key < 4; key++) {
+            table.recordFailure(key, 0, 8);
+        }
+        table.recordFailure(4L, 0, 3);
+
+        assertFalse(table.hasFailed(4L, 0, 3));
+        for (long key = 0; key < 4; key++) {
+            assertTrue(table.hasFailed(key, 0, 8));
+        }
+
+        table.recordFailure(4L, 0, 9);
+        assertTrue(table.hasFailed(4L, 0, 9));
+    }
+
+    @Test
+    void testIncrementalHash() {
+        val spi = new MulticyclePermutation("(0 9 7)(1 5 2 6 3)(4 10 8)");
+        val oneLine = spi.getOneLineNotation().clone();
+        val state = CycleState.of(new OneLinePermutation(oneLine));
+        val initialHash = state.hash;
+        assertEquals(TranspositionTable.hash(oneLine), initialHash);
+
+        state.applyMove(0, 4, 9);
+        assertEquals(TranspositionTable.hash(oneLine), state.hash);
+        state.applyMove(1, 2, 3);
+        assertEquals(TranspositionTable.hash(oneLine), state.hash);
+
+        state.undoMove(1, 2, 3);
+        state.undoMove(0, 4, 9);
+        assertEquals(initialHash, state.hash);
+    }
+
+    @Test
+    void testTableIsReusedAcrossSearches() {
+        val spi = new MulticyclePermutation("(0 9 7)(1 5 2 6 3)(4 10 8)");
+        val backend = new CPUSortingSearch(1, 1024 * 1024);
+
+        assertTrue(SortingSearchTest.search(backend, spi, 2 / 1.375F, 3, false).isEmpty());
+        val moves = SortingSearchTest.search(backend, spi, 2 / 1.375F, 8, false);
+        SortingSearchTest.assertSorting(spi, moves, 2 / 1.375F, false);
+    }
+}
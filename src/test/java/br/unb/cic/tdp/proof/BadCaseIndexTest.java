@@ -0,0 +1,59 @@
+package br.unb.cic.tdp.proof;
+
+import br.unb.cic.tdp.base.Configuration;
+import br.unb.cic.tdp.permutation.Cycle;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BadCaseIndexTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testLoadFromResultStore() {
+        val badCases = new String[]{"(0 4 2)(1 5 3)", "(0 10 2)(1 5 3)(4 8 6)(7 11 9)"};
+        val solved = new Configuration("(0 3 1)(2 5 4)").getCanonical();
+
+        final BadCaseIndex index;
+        try (val store = ResultStore.open(dir, 1 << 16)) {
+            for (val badCase : badCases) {
+                val signature = new Configuration(badCase).getCanonical().getSignature().getContent();
+                store.append(signature, VisitedSet.Outcome.BAD, List.of(), 4, 0);
+            }
+            // stored twice, indexed once
+            store.append(new Configuration(badCases[0]).getCanonical().getSignature().getContent(),
+                    VisitedSet.Outcome.BAD, List.of(), 4, 0);
+            store.append(solved.getSignature().getContent(), VisitedSet.Outcome.SOLVED,
+                    List.of(Cycle.of(0, 2, 4), Cycle.of(1, 3, 5)), 2, 0);
+
+            index = BadCaseIndex.of(store::forEachBad);
+        }
+
+        assertEquals(2, index.size());
+        for (val badCase : badCases) {
+            val configuration = new Configuration(badCase);
+            configuration.getEquivalentSignatures().forEach(signature ->
+                    assertTrue(index.contains(Configuration.ofSignature(signature.getContent()).getCanonical())));
+        }
+        assertFalse(index.contains(solved));
+        assertFalse(index.contains(new Configuration("(0 9 7)(1 5 2 6 3)(4 10 8)").getCanonical()));
+    }
+
+    @Test
+    void testEmpty() {
+        final BadCaseIndex index;
+        try (val store = ResultStore.open(dir, 1 << 16)) {
+            index = BadCaseIndex.of(store::forEachBad);
+        }
+
+        assertEquals(0, index.size());
+        assertFalse(index.contains(new Configuration("(0 4 2)(1 5 3)").getCanonical()));
+    }
+}
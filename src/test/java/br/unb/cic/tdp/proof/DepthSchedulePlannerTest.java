@@ -0,0 +1,109 @@
+package br.unb.cic.tdp.proof;
+
+import br.unb.cic.tdp.permutation.MulticyclePermutation;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DepthSchedulePlannerTest {
+
+    private static final int[] DEFAULT_BOUNDS = {4, 8, 11};
+    private static final String CLASS = "6 3:4";
+
+    @TempDir
+    Path outputDir;
+
+    @Test
+    void testClassOf() {
+        assertEquals("4 1:1 3:2 5:1", DepthSchedulePlanner.classOf(new MulticyclePermutation("(0 9 7)(1 5 2 6 3)(4 10 8)(11)")));
+    }
+
+    @Test
+    void testDefaultScheduleWithoutHistory() {
+        val planner = DepthSchedulePlanner.load(outputDir.resolve(DepthSchedulePlanner.FILE_NAME));
+        record(planner, DepthSchedulePlanner.MIN_SAMPLES - 1, 0, 4);
+
+        assertArrayEquals(DEFAULT_BOUNDS, planner.schedule(CLASS, DEFAULT_BOUNDS));
+    }
+
+    @Test
+    void testSkipsBoundThatNeverSucceeds() {
+        val planner = DepthSchedulePlanner.load(outputDir.resolve(DepthSchedulePlanner.FILE_NAME));
+        record(planner, 40, 0, 4);
+
+        assertArrayEquals(new int[]{8, 11}, planner.schedule(CLASS, DEFAULT_BOUNDS));
+    }
+
+    @Test
+    void testKeepsBoundThatUsuallySucceeds() {
+        val planner = DepthSchedulePlanner.load(outputDir.resolve(DepthSchedulePlanner.FILE_NAME));
+        record(planner, 40, 30, 4);
+
+        assertArrayEquals(DEFAULT_BOUNDS, planner.schedule(CLASS, DEFAULT_BOUNDS));
+    }
+
+    @Test
+    void testShortSortingsFoundByLargerBoundDoNotCount() {
+        val planner = DepthSchedulePlanner.load(outputDir.resolve(DepthSchedulePlanner.FILE_NAME));
+        record(planner, 40, 0, 4);
+        // sortings of 3 moves found with bound 8 once bound 4 is skipped do not tell that bound 4 would succeed
+        val listener = planner.listener(CLASS);
+        for (int s = 0; s < 40; s++) {
+            listener.stageCompleted(8, true, 1_000);
+            planner.recordOutcome(CLASS);
+        }
+
+        assertArrayEquals(new int[]{8, 11}, planner.schedule(CLASS, DEFAULT_BOUNDS));
+    }
+
+    @Test
+    void testSkippedBoundIsExploredPeriodically() {
+        val planner = DepthSchedulePlanner.load(outputDir.resolve(DepthSchedulePlanner.FILE_NAME));
+        record(planner, 40, 0, 4);
+
+        var explored = 0;
+        for (int s = 0; s < DepthSchedulePlanner.EXPLORE_EVERY; s++) {
+            if (planner.schedule(CLASS, DEFAULT_BOUNDS).length == DEFAULT_BOUNDS.length) {
+                explored++;
+            }
+        }
+        assertEquals(1, explored);
+    }
+
+    @Test
+    void testStatisticsArePersisted() {
+        val file = outputDir.resolve(DepthSchedulePlanner.FILE_NAME);
+        val planner = DepthSchedulePlanner.load(file);
+        record(planner, 40, 0, 4);
+        planner.save();
+
+        assertArrayEquals(new int[]{8, 11}, DepthSchedulePlanner.load(file).schedule(CLASS, DEFAULT_BOUNDS));
+    }
+
+    /**
+     * Records <code>searches</code> staged searches of {@link #DEFAULT_BOUNDS}: <code>shortSortings</code> of them
+     * find a sorting with the first bound, <code>unsortable</code> of them find none and the others find one with the
+     * second bound.
+     */
+    private static void record(final DepthSchedulePlanner planner, final int searches, final int shortSortings,
+                               final int unsortable) {
+        for (int s = 0; s < searches; s++) {
+            val listener = planner.listener(CLASS);
+            if (s < shortSortings) {
+                listener.stageCompleted(4, true, 10);
+            } else if (s < shortSortings + unsortable) {
+                listener.stageCompleted(4, false, 100);
+                listener.stageCompleted(8, false, 1_000);
+                listener.stageCompleted(11, false, 10_000);
+            } else {
+                listener.stageCompleted(4, false, 100);
+                listener.stageCompleted(8, true, 500);
+            }
+            planner.recordOutcome(CLASS);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package br.unb.cic.tdp.proof;
+
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrontierJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private final short[] root = {1, 2, 3};
+    private final short[] first = {1, 2, 3, 4};
+    private final short[] second = {4, 3, 2, 1};
+
+    @Test
+    void testPendingConfigurationsSurviveReopening() {
+        try (val journal = FrontierJournal.open(dir)) {
+            assertFalse(journal.resumed());
+            journal.entered(root);
+            journal.entered(first);
+            journal.entered(second);
+            journal.left(root);
+            journal.left(second);
+            journal.append(journal.take());
+        }
+
+        try (val journal = FrontierJournal.open(dir)) {
+            assertTrue(journal.resumed());
+            assertEquals(1, journal.pending().size());
+            assertArrayEquals(first, journal.pending().get(0));
+        }
+        // the journal was rewritten with the pending configurations only
+        try (val journal = FrontierJournal.open(dir)) {
+            assertEquals(1, journal.pending().size());
+        }
+    }
+
+    @Test
+    void testRecordsNotAppendedAreLost() {
+        try (val journal = FrontierJournal.open(dir)) {
+            journal.entered(root);
+            val taken = journal.take();
+            journal.entered(first);
+            journal.left(root);
+            assertTrue(journal.buffered() > 0);
+            journal.append(taken);
+        }
+
+        try (val journal = FrontierJournal.open(dir)) {
+            assertEquals(1, journal.pending().size());
+            assertArrayEquals(root, journal.pending().get(0));
+        }
+    }
+
+    @Test
+    void testJournalIsCompactedDuringTheRun() {
+        try (val journal = FrontierJournal.open(dir, 1024)) {
+            journal.entered(root);
+            journal.append(journal.take());
+            for (short i = 0; i < 1000; i++) {
+                val signature = new short[]{i, 1, 2, 3};
+                journal.entered(signature);
+                journal.left(signature);
+                journal.append(journal.take());
+                // the root alone is pending, so the journal never holds much more than the threshold
+                assertTrue(journal.size() <= 2048, "size: " + journal.size());
+            }
+        }
+
+        try (val journal = FrontierJournal.open(dir)) {
+            assertEquals(1, journal.pending().size());
+            assertArrayEquals(root, journal.pending().get(0));
+        }
+    }
+
+    @Test
+    void testTornRecordIsIgnored() throws Exception {
+        try (val journal = FrontierJournal.open(dir)) {
+            journal.entered(root);
+            journal.entered(first);
+            journal.append(journal.take());
+        }
+
+        val file = dir.resolve(FrontierJournal.FILE_NAME);
+        // cut the last record short, as a crash in the middle of its write would
+        try (val channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 3);
+        }
+
+        try (val journal = FrontierJournal.open(dir)) {
+            assertEquals(1, journal.pending().size());
+            assertArrayEquals(root, journal.pending().get(0));
+        }
+    }
+}
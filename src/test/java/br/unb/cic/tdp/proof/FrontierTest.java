@@ -0,0 +1,80 @@
+package br.unb.cic.tdp.proof;
+
+import br.unb.cic.tdp.base.Configuration;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrontierTest {
+
+    private static final int MAX_IN_FLIGHT = 4;
+    private static final int ROOTS = 50;
+    private static final int CHILDREN = 5;
+
+    @TempDir
+    Path dir;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger maxOutstanding = new AtomicInteger();
+    private final LongAdder processed = new LongAdder();
+
+    @Test
+    void testInFlightTasksAreBoundedAndAllConfigurationsProcessed() {
+        val overflow = new SpillQueue(dir, 8);
+        try (val pool = new ForkJoinPool(4)) {
+            val frontier = new Frontier(pool, MAX_IN_FLIGHT, configuration -> {
+                maxOutstanding.accumulateAndGet(outstanding.incrementAndGet(), Math::max);
+                return new CountingTask(configuration);
+            }, overflow, null, null);
+
+            for (int r = 0; r < ROOTS; r++) {
+                frontier.submit(new Configuration("(0 2 1)"));
+            }
+            frontier.await();
+        }
+
+        assertEquals(ROOTS + ROOTS * CHILDREN, processed.sum());
+        assertTrue(maxOutstanding.get() <= MAX_IN_FLIGHT, "max outstanding: " + maxOutstanding.get());
+        assertTrue(overflow.spilled() > 0);
+        assertTrue(overflow.isEmpty());
+    }
+
+    /**
+     * Counts its configuration as processed; each 3-cycle is extended by {@link #CHILDREN} pairs of 3-cycles.
+     */
+    private final class CountingTask extends SortOrExtend {
+
+        CountingTask(final Configuration configuration) {
+            super(configuration, dir.toString());
+        }
+
+        @SneakyThrows
+        @Override
+        protected void compute() {
+            try {
+                if (configuration.getPi().size() == 3) {
+                    for (int c = 0; c < CHILDREN; c++) {
+                        submit(new Configuration("(0 2 1)(3 5 4)"));
+                    }
+                }
+                Thread.sleep(1);
+                processed.increment();
+            } finally {
+                outstanding.decrementAndGet();
+                frontier.completed(this, true);
+            }
+        }
+
+        @Override
+        protected void extend(final Configuration configuration) {
+        }
+    }
+}
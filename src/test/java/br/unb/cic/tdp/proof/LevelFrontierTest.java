@@ -0,0 +1,124 @@
+package br.unb.cic.tdp.proof;
+
+import br.unb.cic.tdp.base.CanonicalCache;
+import br.unb.cic.tdp.base.Configuration;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LevelFrontierTest {
+
+    @TempDir
+    Path dir;
+
+    // fresh instances, whose canonical forms are not computed yet
+    private final Configuration one = new Configuration("(0 2 1)");
+    private final Configuration two = new Configuration("(0 2 1)(3 5 4)");
+    private final Configuration three = new Configuration("(0 2 1)(3 5 4)(6 8 7)");
+
+    private final List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+    private final List<Integer> checkpoints = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void testLevelsAreExploredInIncreasingThreeNorm() {
+        run(frontier -> {
+            frontier.submit(three);
+            frontier.submit(one);
+            frontier.submit(two);
+        });
+
+        // the 3-cycle is also extended into a pair of 3-cycles, which is dropped as a duplicate of the one queued
+        assertEquals(List.of(1, 2, 3), processed);
+    }
+
+    @Test
+    void testEquivalentConfigurationsAreSearchedOnce() {
+        val equivalent = two.getEquivalentSignatures()
+                .filter(signature -> !Arrays.equals(signature.getContent(), two.getSignature().getContent()))
+                .map(signature -> Configuration.ofSignature(signature.getContent()))
+                .findFirst().orElseThrow();
+
+        run(frontier -> {
+            frontier.submit(two);
+            frontier.submit(equivalent);
+            frontier.submit(two);
+        });
+
+        // the pair of 3-cycles once, then its extension
+        assertEquals(List.of(2, 3), processed);
+    }
+
+    @Test
+    void testCheckpointFollowsEachLevel() {
+        run(frontier -> {
+            frontier.submit(one);
+            frontier.submit(three);
+        });
+
+        // run once the configurations of each level are processed, the extension of the 3-cycle forming the second
+        assertEquals(List.of(1, 2, 3), checkpoints);
+    }
+
+    @Test
+    void testCanonicalFormIsComputedOncePerConfiguration() {
+        CanonicalCache.enable(16);
+        try {
+            run(frontier -> {
+                frontier.submit(two);
+                frontier.submit(three);
+            });
+            // once by submit for each configuration, the extension of the pair included; the tasks reuse the queued ones
+            assertEquals(3, CanonicalCache.stats().requestCount());
+        } finally {
+            CanonicalCache.disable();
+        }
+    }
+
+    private void run(final Consumer<LevelFrontier> roots) {
+        try (val pool = new ForkJoinPool(2)) {
+            val frontier = new LevelFrontier(pool, 4, RecordingTask::new, dir, 1 << 16, null,
+                    () -> checkpoints.add(processed.size()));
+            roots.accept(frontier);
+            frontier.await();
+        }
+    }
+
+    /**
+     * Records the 3-norm of its configuration and extends each configuration by an extra 3-cycle, up to three.
+     */
+    private final class RecordingTask extends SortOrExtend {
+
+        RecordingTask(final Configuration configuration) {
+            super(configuration, dir.toString());
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                configuration.getCanonical();
+                processed.add(configuration.getSpi().get3Norm());
+                if (configuration.getPi().size() < 9) {
+                    extend(configuration);
+                }
+            } finally {
+                frontier.completed(this, true);
+            }
+        }
+
+        @Override
+        protected void extend(final Configuration configuration) {
+            val n = configuration.getPi().size();
+            submit(new Configuration(configuration.getSpi() + "(" + n + " " + (n + 2) + " " + (n + 1) + ")"));
+        }
+    }
+}
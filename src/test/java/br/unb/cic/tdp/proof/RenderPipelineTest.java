@@ -0,0 +1,114 @@
+package br.unb.cic.tdp.proof;
+
+import br.unb.cic.tdp.base.CPUSortingSearch;
+import br.unb.cic.tdp.base.Configuration;
+import br.unb.cic.tdp.permutation.Cycle;
+import br.unb.cic.tdp.permutation.MulticyclePermutation;
+import br.unb.cic.tdp.permutation.OneLinePermutation;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.apache.velocity.app.Velocity;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderPipelineTest {
+
+    private static final Configuration CANONICAL = new Configuration("(0 4 2)(1 5 3)").getCanonical();
+    private static final List<Cycle> SORTING = new CPUSortingSearch(1)
+            .search(MulticyclePermutation.CANONICAL_PI_BYTE[6], new OneLinePermutation(CANONICAL.getSpi().getOneLineNotation()),
+                    CANONICAL.getSpi().getNumberOfEvenCycles(), 1F, 3, true)
+            .stream().map(move -> Cycle.of(move[0], move[1], move[2])).toList();
+
+    @TempDir
+    Path outputDir;
+
+    @BeforeAll
+    static void initVelocity() {
+        Velocity.setProperty("resource.loader", "class");
+        Velocity.setProperty("class.resource.loader.class", "org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader");
+        Velocity.init();
+    }
+
+    @Test
+    void testPageIsWrittenBeforeTheSortingIsStored() throws Exception {
+        val pipeline = new RenderPipeline(new DirectoryPageSink(), 1, 1, false);
+        try (val store = ResultStore.open(outputDir.resolve(ResultStore.DIR_NAME), 1 << 16)) {
+            pipeline.solved(store, outputDir.toString(), CANONICAL, SORTING, 1000);
+            assertEquals(Optional.of(VisitedSet.Outcome.SOLVED), store.outcome(CANONICAL.getSignature().getContent()));
+
+            pipeline.finish(store, outputDir.toString());
+            assertTrue(Files.readString(page()).contains(CANONICAL.getSpi().toString()));
+        }
+
+        try (val store = ResultStore.open(outputDir.resolve(ResultStore.DIR_NAME), 1 << 16)) {
+            assertEquals(1, store.recovered());
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void testDeferredPagesAreRenderedFromTheStore() throws Exception {
+        val pipeline = new RenderPipeline(new DirectoryPageSink(), 1, 1, true);
+        try (val store = ResultStore.open(outputDir.resolve(ResultStore.DIR_NAME), 1 << 16)) {
+            pipeline.solved(store, outputDir.toString(), CANONICAL, SORTING, 1000);
+            assertFalse(Files.exists(page()));
+
+            pipeline.finish(store, outputDir.toString());
+            assertTrue(Files.readString(page()).contains(CANONICAL.getSpi().toString()));
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void testFinishDoesNotWaitForThePagesQueued() {
+        // a sink losing its pages, so that finish renders the stored sortings again while the first pages are queued
+        val sink = new PageSink() {
+            @Override
+            public boolean exists(final Path page) {
+                return false;
+            }
+
+            @Override
+            @SneakyThrows
+            public void write(final Path page, final String content) {
+                Thread.sleep(10);
+            }
+
+            @Override
+            public boolean writesThrough() {
+                return false;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        val pipeline = new RenderPipeline(sink, 1, 1, false);
+        try (val store = ResultStore.open(outputDir.resolve(ResultStore.DIR_NAME), 1 << 16)) {
+            assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+                for (int i = 0; i < 4; i++) {
+                    pipeline.solved(store, outputDir.toString(), CANONICAL, SORTING, 1000);
+                }
+                pipeline.finish(store, outputDir.toString());
+            });
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    private Path page() {
+        return outputDir.resolve(CANONICAL.getSpi() + ".html");
+    }
+}
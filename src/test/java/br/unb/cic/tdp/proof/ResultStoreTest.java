@@ -0,0 +1,93 @@
+package br.unb.cic.tdp.proof;
+
+import br.unb.cic.tdp.base.Configuration;
+import br.unb.cic.tdp.permutation.Cycle;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultStoreTest {
+
+    private static final long VISITED_SET_BYTES = 1 << 16;
+
+    @TempDir
+    Path dir;
+
+    private final short[] solved = new Configuration("(0 9 7)(1 5 2 6 3)(4 10 8)").getCanonical().getSignature().getContent();
+    private final short[] bad = new Configuration("(0 4 2)(1 5 3)").getCanonical().getSignature().getContent();
+
+    @Test
+    void testOutcomesSurviveReopening() {
+        try (val store = ResultStore.open(dir, VISITED_SET_BYTES)) {
+            store.append(solved, VisitedSet.Outcome.SOLVED, List.of(Cycle.of(0, 2, 4), Cycle.of(1, 3, 5)), 2, 1000);
+            store.append(bad, VisitedSet.Outcome.BAD, List.of(), 8, 2000);
+            store.remember(new Configuration("(0 3 1)(2 5 4)").getCanonical().getSignature().getContent(),
+                    VisitedSet.Outcome.SOLVED);
+        }
+
+        try (val store = ResultStore.open(dir, VISITED_SET_BYTES)) {
+            assertEquals(2, store.recovered());
+            assertEquals(Optional.of(VisitedSet.Outcome.SOLVED), store.outcome(solved));
+            assertEquals(Optional.of(VisitedSet.Outcome.BAD), store.outcome(bad));
+            // remembered outcomes are not stored
+            assertEquals(Optional.empty(), store.outcome(new Configuration("(0 3 1)(2 5 4)").getCanonical()
+                    .getSignature().getContent()));
+        }
+    }
+
+    @Test
+    void testOverflowOfTheVisitedSetIsTracked() {
+        // a single slot
+        try (val store = ResultStore.open(dir, 0)) {
+            store.append(solved, VisitedSet.Outcome.SOLVED, List.of(Cycle.of(0, 2, 4)), 1, 1000);
+            assertFalse(store.overflowed());
+            store.append(bad, VisitedSet.Outcome.BAD, List.of(), 8, 2000);
+            assertTrue(store.overflowed());
+        }
+
+        try (val store = ResultStore.open(dir, 0)) {
+            assertTrue(store.overflowed());
+        }
+        try (val store = ResultStore.open(dir, VISITED_SET_BYTES)) {
+            assertFalse(store.overflowed());
+        }
+    }
+
+    @Test
+    void testTornRecordIsTruncated() throws Exception {
+        try (val store = ResultStore.open(dir, VISITED_SET_BYTES)) {
+            store.append(solved, VisitedSet.Outcome.SOLVED, List.of(Cycle.of(0, 2, 4)), 1, 1000);
+            store.append(bad, VisitedSet.Outcome.BAD, List.of(), 8, 2000);
+        }
+
+        val segment = dir.resolve("segment-00000.log");
+        val size = Files.size(segment);
+        // cut the last record short, as a crash in the middle of its write would
+        try (val channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        try (val store = ResultStore.open(dir, VISITED_SET_BYTES)) {
+            assertEquals(1, store.recovered());
+            assertEquals(Optional.of(VisitedSet.Outcome.SOLVED), store.outcome(solved));
+            assertEquals(Optional.empty(), store.outcome(bad));
+
+            // appends resume after the last valid record
+            store.append(bad, VisitedSet.Outcome.BAD, List.of(), 8, 2000);
+        }
+
+        try (val store = ResultStore.open(dir, VISITED_SET_BYTES)) {
+            assertEquals(2, store.recovered());
+            assertEquals(Optional.of(VisitedSet.Outcome.BAD), store.outcome(bad));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package br.unb.cic.tdp.proof;
+
+import br.unb.cic.tdp.base.Configuration;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SiblingFilterTest {
+
+    @Test
+    void testKeepsOneConfigurationPerCanonicalForm() {
+        val necklace = new Configuration("(0 10 2)(1 5 3)(4 8 6)(7 11 9)");
+        val twisted = new Configuration("(0 7 5)(1 11 9)(2 6 4)(3 10 8)");
+        val interleaving = new Configuration("(0 4 2)(1 5 3)");
+        val intersecting = new Configuration("(0 3 1)(2 5 4)");
+
+        val siblings = new SiblingFilter();
+        val buffer = new short[16];
+        for (val configuration : new Configuration[]{necklace, twisted, interleaving, intersecting}) {
+            configuration.getEquivalentSignatures().forEach(signature -> {
+                // the buffer is reused, and longer than the signatures
+                Arrays.fill(buffer, (short) -1);
+                System.arraycopy(signature.getContent(), 0, buffer, 0, signature.getContent().length);
+                siblings.add(buffer, signature.getContent().length);
+            });
+        }
+
+        val kept = new ArrayList<Configuration>();
+        siblings.forEach(kept::add);
+        assertEquals(4, kept.size());
+        assertTrue(kept.containsAll(Arrays.asList(necklace, twisted, interleaving, intersecting)));
+    }
+}
@@ -0,0 +1,65 @@
+package br.unb.cic.tdp.proof;
+
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpillQueueTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testSpilledSignaturesAreReadBack() throws Exception {
+        val queue = new SpillQueue(dir, 4);
+        for (int i = 1; i <= 11; i++) {
+            queue.push(new short[]{(short) i, (short) (i << 8)});
+        }
+
+        assertEquals(7, queue.spilled());
+        // two full segments and one being written
+        try (val files = Files.list(dir)) {
+            assertEquals(2, files.count());
+        }
+
+        val polled = new HashSet<List<Short>>();
+        short[] signature;
+        while ((signature = queue.poll()) != null) {
+            polled.add(List.of(signature[0], signature[1]));
+        }
+
+        assertEquals(11, polled.size());
+        for (int i = 1; i <= 11; i++) {
+            assertTrue(polled.contains(List.of((short) i, (short) (i << 8))));
+        }
+        assertTrue(queue.isEmpty());
+        try (val files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testSegmentsOfPreviousRunAreDeleted() throws Exception {
+        val previous = new SpillQueue(dir, 1);
+        for (int i = 1; i <= 3; i++) {
+            previous.push(new short[]{(short) i});
+        }
+
+        val queue = new SpillQueue(dir, 1);
+        try (val files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+        queue.push(new short[]{4});
+        queue.push(new short[]{5});
+        assertArrayEquals(new short[]{4}, queue.poll());
+        assertArrayEquals(new short[]{5}, queue.poll());
+        assertNull(queue.poll());
+    }
+}
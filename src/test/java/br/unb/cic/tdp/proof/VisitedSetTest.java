@@ -0,0 +1,87 @@
+package br.unb.cic.tdp.proof;
+
+import br.unb.cic.tdp.base.Configuration;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VisitedSetTest {
+
+    @Test
+    void testRecordedOutcomes() {
+        val set = new VisitedSet(1024);
+        val solved = new Configuration("(0 9 7)(1 5 2 6 3)(4 10 8)").getCanonical().getSignature().getContent();
+        val bad = new Configuration("(0 4 2)(1 5 3)").getCanonical().getSignature().getContent();
+
+        assertTrue(set.record(solved, VisitedSet.Outcome.SOLVED));
+        assertTrue(set.record(bad, VisitedSet.Outcome.BAD));
+
+        assertEquals(Optional.of(VisitedSet.Outcome.SOLVED), set.outcome(solved));
+        assertEquals(Optional.of(VisitedSet.Outcome.BAD), set.outcome(bad));
+        assertEquals(Optional.empty(), set.outcome(new Configuration("(0 8 2)(1 6 4)(3 7 5)").getCanonical()
+                .getSignature().getContent()));
+    }
+
+    @Test
+    void testFirstOutcomeIsKept() {
+        val set = new VisitedSet(1024);
+        val signature = new short[]{Configuration.pack(1, 0), Configuration.pack(1, 0), Configuration.pack(1, 0)};
+
+        assertTrue(set.record(signature, VisitedSet.Outcome.BAD));
+        assertTrue(set.record(signature, VisitedSet.Outcome.SOLVED));
+        assertEquals(Optional.of(VisitedSet.Outcome.BAD), set.outcome(signature));
+    }
+
+    @Test
+    void testAddOnlyOnce() {
+        val set = new VisitedSet(1024);
+        val signature = new short[]{Configuration.pack(1, 0), Configuration.pack(1, 0), Configuration.pack(1, 0)};
+
+        assertTrue(set.add(signature, VisitedSet.Outcome.BAD));
+        assertFalse(set.add(signature, VisitedSet.Outcome.SOLVED));
+        assertEquals(Optional.of(VisitedSet.Outcome.BAD), set.outcome(signature));
+
+        // without room, configurations are never reported as already added
+        val full = new VisitedSet(16);
+        assertTrue(full.add(new short[]{Configuration.pack(1, 0)}, VisitedSet.Outcome.BAD));
+        assertTrue(full.add(signature, VisitedSet.Outcome.BAD));
+        assertTrue(full.add(signature, VisitedSet.Outcome.BAD));
+    }
+
+    @Test
+    void testFullTableFallsBack() {
+        // a single slot
+        val set = new VisitedSet(16);
+        val first = new short[]{Configuration.pack(1, 0)};
+        val second = new short[]{Configuration.pack(1, 0), Configuration.pack(1, 0), Configuration.pack(1, 0)};
+
+        assertTrue(set.record(first, VisitedSet.Outcome.SOLVED));
+        assertFalse(set.record(second, VisitedSet.Outcome.SOLVED));
+        assertEquals(Optional.of(VisitedSet.Outcome.SOLVED), set.outcome(first));
+        assertEquals(Optional.empty(), set.outcome(second));
+    }
+
+    @Test
+    void testConcurrentRecords() {
+        val set = new VisitedSet(1 << 20);
+        val signatures = new ArrayList<short[]>();
+        for (int label = 1; label <= 200; label++) {
+            for (int rank = 0; rank < 20; rank++) {
+                signatures.add(new short[]{Configuration.pack(label, rank), Configuration.pack(1, 0)});
+            }
+        }
+
+        IntStream.range(0, 8).parallel().forEach(thread -> signatures.forEach(signature ->
+                assertTrue(set.record(signature, signature[0] % 2 == 0 ? VisitedSet.Outcome.SOLVED : VisitedSet.Outcome.BAD))));
+
+        for (val signature : signatures) {
+            assertEquals(Optional.of(signature[0] % 2 == 0 ? VisitedSet.Outcome.SOLVED : VisitedSet.Outcome.BAD),
+                    set.outcome(signature));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package br.unb.cic.tdp.proof;
+
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZipPageSinkTest {
+
+    @TempDir
+    Path outputDir;
+
+    @Test
+    void testPagesOfPreviousRunsAreKept() throws Exception {
+        try (val sink = ZipPageSink.open(outputDir)) {
+            sink.write(outputDir.resolve("dfs/(0 4 2)(1 5 3).html"), "first");
+            sink.write(outputDir.resolve("dfs/(0 4 2)(1 5 3).html"), "replaced");
+            assertTrue(sink.exists(outputDir.resolve("dfs/(0 4 2)(1 5 3).html")));
+        }
+
+        try (val sink = ZipPageSink.open(outputDir)) {
+            assertTrue(sink.exists(outputDir.resolve("dfs/(0 4 2)(1 5 3).html")));
+            assertFalse(sink.exists(outputDir.resolve("comb/(0 4 2)(1 5 3).html")));
+            sink.write(outputDir.resolve("comb/(0 4 2)(1 5 3).html"), "second");
+        }
+
+        assertEquals(2, ZipPageSink.archives(outputDir).size());
+        try (val zip = new ZipFile(outputDir.resolve("pages-00000.zip").toFile())) {
+            assertEquals(1, zip.size());
+            assertEquals("first", new String(zip.getInputStream(zip.getEntry("dfs/(0 4 2)(1 5 3).html")).readAllBytes()));
+        }
+    }
+
+    @Test
+    void testArchiveCutShortIsRepaired() throws Exception {
+        try (val sink = ZipPageSink.open(outputDir)) {
+            sink.write(outputDir.resolve("dfs/a.html"), "a".repeat(1000));
+            sink.write(outputDir.resolve("dfs/b.html"), "b".repeat(1000));
+        }
+
+        // drop the central directory and the end of the last entry, as a crash would
+        val archive = outputDir.resolve("pages-00000.zip");
+        try (val zip = new ZipFile(archive.toFile());
+             val channel = FileChannel.open(archive, StandardOpenOption.WRITE)) {
+            val last = zip.getEntry("dfs/b.html");
+            channel.truncate(Files.size(archive) - 22 - 2 * (46 + last.getName().length()) - last.getCompressedSize() / 2);
+        }
+
+        try (val sink = ZipPageSink.open(outputDir)) {
+            assertTrue(sink.exists(outputDir.resolve("dfs/a.html")));
+            assertFalse(sink.exists(outputDir.resolve("dfs/b.html")));
+        }
+        try (val zip = new ZipFile(archive.toFile())) {
+            assertEquals("a".repeat(1000), new String(zip.getInputStream(zip.getEntry("dfs/a.html")).readAllBytes()));
+        }
+    }
+}